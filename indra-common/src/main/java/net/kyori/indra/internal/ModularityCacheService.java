@@ -0,0 +1,226 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.internal;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import net.kyori.mammoth.Properties;
+import org.gradle.api.Project;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A build service memoizing {@link ModularityDetecter} results.
+ *
+ * <p>Results are keyed by absolute path, size, and modification time, and are retained
+ * for the lifetime of the daemon, up to ten thousand libraries, so each library is
+ * only inspected once. Results can optionally be persisted to a file to survive across daemons.
+ * Entries in that file are dropped once their library no longer matches.</p>
+ */
+public abstract class ModularityCacheService implements BuildService<ModularityCacheService.Parameters>, AutoCloseable {
+  public static final String SERVICE_NAME = "indraModularityCache";
+  /**
+   * A gradle property that, when set to {@code true}, persists results in the Gradle user home.
+   */
+  public static final String PERSISTENT_CACHE_PROPERTY = "indraPersistentModularityCache";
+
+  private static final Logger LOGGER = Logging.getLogger(ModularityCacheService.class);
+  private static final String STORE_HEADER = "# indra modularity cache v1";
+  private static final int MAX_RESULTS = 10_000;
+  // shared by every build in the daemon, least recently used first
+  private static final Map<String, Entry> RESULTS = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+      return this.size() > MAX_RESULTS;
+    }
+  });
+
+  // libraries inspected in this build, and the contents of the persistent store
+  private final Map<String, Entry> used = new ConcurrentHashMap<>();
+  private final Map<String, Entry> stored = new ConcurrentHashMap<>();
+  private volatile boolean loaded;
+  private volatile boolean dirty;
+
+  public interface Parameters extends BuildServiceParameters {
+    /**
+     * A file to persist inspection results to, shared across daemons.
+     *
+     * @return the persistent store
+     */
+    RegularFileProperty getStore();
+  }
+
+  /**
+   * Register the service for a build, if it is not yet present.
+   *
+   * @param project a project in the build
+   * @return the service
+   */
+  public static Provider<ModularityCacheService> register(final @NotNull Project project) {
+    final Gradle gradle = project.getGradle();
+    final Provider<Boolean> persistent = Properties.forUseAtConfigurationTime(project.getProviders().gradleProperty(PERSISTENT_CACHE_PROPERTY))
+      .map(Boolean::parseBoolean)
+      .orElse(false);
+    return gradle.getSharedServices().registerIfAbsent(SERVICE_NAME, ModularityCacheService.class, spec -> {
+      if (persistent.get()) {
+        spec.getParameters().getStore().set(new File(gradle.getGradleUserHomeDir(), "caches/indra/modularity.txt"));
+      }
+    });
+  }
+
+  /**
+   * Determine whether a library is a module, using a cached result if the library is unchanged.
+   *
+   * @param library a jar or directory
+   * @return the modularity of the library
+   */
+  public ModularityDetecter.Modularity inspect(final @NotNull File library) {
+    this.loadStore();
+    final String path = library.getAbsolutePath();
+    final long size = library.length();
+    final long lastModified = library.lastModified();
+    final @Nullable Entry persisted = this.stored.get(path);
+    final @Nullable Entry existing = RESULTS.get(path);
+    if (existing != null && existing.matches(size, lastModified)) {
+      this.used.put(path, existing);
+      if (persisted == null || !persisted.matches(size, lastModified)) {
+        this.dirty = true;
+      }
+      return existing.result;
+    }
+
+    if (persisted != null && persisted.matches(size, lastModified)) {
+      RESULTS.put(path, persisted);
+      this.used.put(path, persisted);
+      return persisted.result;
+    }
+
+    final Entry inspected = new Entry(size, lastModified, ModularityDetecter.inspect(library));
+    RESULTS.put(path, inspected);
+    this.used.put(path, inspected);
+    this.dirty = true;
+    return inspected.result;
+  }
+
+  private void loadStore() {
+    if (this.loaded) return;
+    synchronized (this) {
+      if (this.loaded) return;
+      final @Nullable Path store = this.store();
+      if (store != null && Files.isRegularFile(store)) {
+        try (final BufferedReader reader = Files.newBufferedReader(store, StandardCharsets.UTF_8)) {
+          if (STORE_HEADER.equals(reader.readLine())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+              final String[] parts = line.split("\t", -1);
+              if (parts.length != 5) continue;
+              final ModularityDetecter.Modularity result = Boolean.parseBoolean(parts[3])
+                ? ModularityDetecter.Modularity.module(parts[4].isEmpty() ? null : parts[4])
+                : ModularityDetecter.Modularity.NOT_MODULE;
+              this.stored.put(parts[0], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), result));
+            }
+          }
+        } catch (final IOException | NumberFormatException ex) {
+          LOGGER.info("Failed to read modularity cache from {}, ignoring", store, ex);
+        }
+      }
+      this.loaded = true;
+    }
+  }
+
+  private @Nullable Path store() {
+    final @Nullable File store = this.getParameters().getStore().getAsFile().getOrNull();
+    return store == null ? null : store.toPath();
+  }
+
+  @Override
+  public void close() {
+    final @Nullable Path store = this.store();
+    if (store == null || !this.loaded) return;
+
+    // keep entries from other builds only while their library is unchanged, so stale paths do not pile up
+    final Map<String, Entry> retained = new HashMap<>(this.used);
+    for (final Map.Entry<String, Entry> entry : this.stored.entrySet()) {
+      if (retained.containsKey(entry.getKey())) continue;
+      final File library = new File(entry.getKey());
+      if (library.exists() && entry.getValue().matches(library.length(), library.lastModified())) {
+        retained.put(entry.getKey(), entry.getValue());
+      }
+    }
+    if (!this.dirty && retained.size() == this.stored.size()) return;
+
+    try {
+      Files.createDirectories(store.getParent());
+      final Path temp = Files.createTempFile(store.getParent(), store.getFileName().toString(), ".tmp");
+      try (final BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+        writer.write(STORE_HEADER);
+        writer.newLine();
+        for (final Map.Entry<String, Entry> entry : retained.entrySet()) {
+          final Entry value = entry.getValue();
+          if (entry.getKey().indexOf('\t') != -1 || entry.getKey().indexOf('\n') != -1) continue;
+          writer.write(entry.getKey() + '\t' + value.size + '\t' + value.lastModified + '\t' + value.result.isModule() + '\t' + Objects.toString(value.result.name(), ""));
+          writer.newLine();
+        }
+      }
+      Files.move(temp, store, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (final IOException ex) {
+      LOGGER.info("Failed to write modularity cache to {}", store, ex);
+    }
+  }
+
+  static final class Entry {
+    final long size;
+    final long lastModified;
+    final ModularityDetecter.Modularity result;
+
+    Entry(final long size, final long lastModified, final ModularityDetecter.Modularity result) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.result = result;
+    }
+
+    boolean matches(final long size, final long lastModified) {
+      return this.size == size && this.lastModified == lastModified;
+    }
+  }
+}
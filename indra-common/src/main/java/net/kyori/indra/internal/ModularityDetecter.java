@@ -34,6 +34,10 @@ import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ModuleVisitor;
+import org.objectweb.asm.Opcodes;
 
 /**
  * Our version of JavaModuleDetector from Gradle, since that's internal API.
@@ -55,12 +59,25 @@ public final class ModularityDetecter {
       return false;
     }
 
+    return inspect(library).isModule();
+  }
+
+  /**
+   * Determine whether a library is a module, and what its name is.
+   *
+   * @param library a jar or directory
+   * @return the modularity of the library
+   */
+  public static @NotNull Modularity inspect(final @NotNull File library) {
     if (library.isFile()) {
       // Treat as a jar file
       try (final ZipFile jf = new ZipFile(library)) {
         // Direct module
-        if (jf.getEntry(MODULE_INFO) != null) {
-          return true;
+        final @Nullable ZipEntry moduleInfo = jf.getEntry(MODULE_INFO);
+        if (moduleInfo != null) {
+          try (final InputStream is = jf.getInputStream(moduleInfo)) {
+            return Modularity.module(moduleName(is));
+          }
         }
         final @Nullable ZipEntry manifestEntry = jf.getEntry(MANIFEST);
         if (manifestEntry != null) {
@@ -69,23 +86,30 @@ public final class ModularityDetecter {
             manifest = new Manifest(is);
           }
           // Automatic module
-          if (manifest.getMainAttributes().getValue(AUTOMATIC_MODULE_NAME) != null) {
-            return true;
+          final @Nullable String automaticName = manifest.getMainAttributes().getValue(AUTOMATIC_MODULE_NAME);
+          if (automaticName != null) {
+            return Modularity.module(automaticName);
           }
           // In multi-release variant
           if ("true".equals(manifest.getMainAttributes().getValue(MULTI_RELEASE))) {
-            return jf.stream().anyMatch(entry -> isModuleInfo(entry.getName()));
+            final @Nullable ZipEntry versioned = jf.stream().filter(entry -> isModuleInfo(entry.getName())).findFirst().orElse(null);
+            if (versioned != null) {
+              try (final InputStream is = jf.getInputStream(versioned)) {
+                return Modularity.module(moduleName(is));
+              }
+            }
           }
         }
       } catch (final IOException ex) {
         LOGGER.debug("Failed to determine module status for {}:", library, ex);
-        return false;
+        return Modularity.NOT_MODULE;
       }
     } else if (library.isDirectory()) {
       // Directory, unpacked module
       // Direct module
-      if (new File(library, MODULE_INFO).isFile()) {
-        return true;
+      final File moduleInfo = new File(library, MODULE_INFO);
+      if (moduleInfo.isFile()) {
+        return Modularity.module(moduleName(moduleInfo));
       }
       final File manifestFile = new File(library, MANIFEST);
       if (manifestFile.isFile()) {
@@ -94,29 +118,95 @@ public final class ModularityDetecter {
           manifest = new Manifest(is);
         } catch (final IOException ex) {
           LOGGER.debug("Failed to determine module status for {}:", library, ex);
-          return false;
+          return Modularity.NOT_MODULE;
         }
         // Automatic module
-        if (manifest.getMainAttributes().getValue(AUTOMATIC_MODULE_NAME) != null) {
-          return true;
+        final @Nullable String automaticName = manifest.getMainAttributes().getValue(AUTOMATIC_MODULE_NAME);
+        if (automaticName != null) {
+          return Modularity.module(automaticName);
         }
         // In multi-release variant
         if ("true".equals(manifest.getMainAttributes().getValue(MULTI_RELEASE))) {
           final File[] variants = new File(library, "META-INF/versions/").listFiles();
           if (variants != null) {
             for (final File variant : variants) {
-              if (new File(variant, MODULE_INFO).exists()) {
-                return true;
+              final File variantModuleInfo = new File(variant, MODULE_INFO);
+              if (variantModuleInfo.exists()) {
+                return Modularity.module(moduleName(variantModuleInfo));
               }
             }
           }
         }
       }
     }
-    return false;
+    return Modularity.NOT_MODULE;
+  }
+
+  private static @Nullable String moduleName(final File moduleInfo) {
+    try (final InputStream is = new FileInputStream(moduleInfo)) {
+      return moduleName(is);
+    } catch (final IOException ex) {
+      LOGGER.debug("Failed to read module name from {}:", moduleInfo, ex);
+      return null;
+    }
+  }
+
+  private static @Nullable String moduleName(final InputStream moduleInfo) throws IOException {
+    final String[] name = new String[1];
+    try {
+      new ClassReader(moduleInfo).accept(new ClassVisitor(Opcodes.ASM9) {
+        @Override
+        public ModuleVisitor visitModule(final String moduleName, final int access, final String version) {
+          name[0] = moduleName;
+          return null;
+        }
+      }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    } catch (final RuntimeException ex) {
+      // such as a class file version newer than ASM supports, which is still a module
+      LOGGER.debug("Failed to read module name from descriptor:", ex);
+      return null;
+    }
+    return name[0];
   }
 
   public static boolean isModuleInfo(final @NotNull String path) {
     return "module-info.class".equals(path) || (path.startsWith(MULTIRELEASE_PATH_PREFIX) && path.endsWith("module-info.class")); // todo: stricter multi-release handling
   }
+
+  /**
+   * Whether a library is a module, and its name if known.
+   */
+  public static final class Modularity {
+    static final Modularity NOT_MODULE = new Modularity(false, null);
+
+    private final boolean module;
+    private final @Nullable String name;
+
+    Modularity(final boolean module, final @Nullable String name) {
+      this.module = module;
+      this.name = name;
+    }
+
+    static Modularity module(final @Nullable String name) {
+      return new Modularity(true, name);
+    }
+
+    /**
+     * Whether the library can be placed on the module path.
+     *
+     * @return whether the library is a module
+     */
+    public boolean isModule() {
+      return this.module;
+    }
+
+    /**
+     * The name of the module, from its descriptor or {@code Automatic-Module-Name}.
+     *
+     * @return the module name, or {@code null} if not a module or the name could not be read
+     */
+    public @Nullable String name() {
+      return this.name;
+    }
+  }
 }
@@ -0,0 +1,147 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.internal;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.dsl.DependencyHandler;
+import org.gradle.api.artifacts.transform.InputArtifact;
+import org.gradle.api.artifacts.transform.TransformAction;
+import org.gradle.api.artifacts.transform.TransformOutputs;
+import org.gradle.api.artifacts.transform.TransformParameters;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.FileSystemLocation;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An artifact transform that sorts dependencies into those that belong on the module path, and those that belong on the
+ * class path.
+ *
+ * <p>Modularity is determined once per artifact by {@link ModularityDetecter}, and the result is kept in Gradle's
+ * transform cache. Consumers select one side of the split by requesting an artifact view with the
+ * {@link #MODULARITY_ATTRIBUTE} set to either {@link #MODULE} or {@link #CLASSPATH}.</p>
+ */
+public abstract class ModularityTransform implements TransformAction<ModularityTransform.Parameters> {
+  public static final Attribute<String> MODULARITY_ATTRIBUTE = Attribute.of("net.kyori.indra.modularity", String.class);
+  public static final String UNKNOWN = "unknown";
+  public static final String MODULE = "module";
+  public static final String CLASSPATH = "classpath";
+
+  private static final Logger LOGGER = Logging.getLogger(ModularityTransform.class);
+
+  public interface Parameters extends TransformParameters {
+    /**
+     * Whether this transform keeps modules, rather than non-modules.
+     *
+     * @return whether to keep modules
+     */
+    @Input
+    Property<Boolean> getModular();
+  }
+
+  /**
+   * Register the transforms and attribute defaults with a project's dependency handler.
+   *
+   * @param dependencies the dependency handler
+   */
+  public static void register(final @NotNull DependencyHandler dependencies) {
+    dependencies.getAttributesSchema().attribute(MODULARITY_ATTRIBUTE);
+    dependencies.getArtifactTypes().configureEach(type -> type.getAttributes().attribute(MODULARITY_ATTRIBUTE, UNKNOWN));
+    registerTransform(dependencies, MODULE, true);
+    registerTransform(dependencies, CLASSPATH, false);
+  }
+
+  private static void registerTransform(final DependencyHandler dependencies, final String target, final boolean modular) {
+    dependencies.registerTransform(ModularityTransform.class, spec -> {
+      spec.getFrom().attribute(MODULARITY_ATTRIBUTE, UNKNOWN);
+      spec.getTo().attribute(MODULARITY_ATTRIBUTE, target);
+      spec.getParameters().getModular().set(modular);
+    });
+  }
+
+  /**
+   * Select the part of a configuration's files that belongs on either the module path or the class path.
+   *
+   * <p>When module path inference is disabled, every file is placed on the module path.</p>
+   *
+   * @param project the project owning the configuration
+   * @param configurationName the name of the configuration
+   * @param inferModulePath whether to infer the module path
+   * @param modular whether to select the module path, rather than the class path
+   * @return the selected files
+   */
+  public static FileCollection split(final @NotNull Project project, final @NotNull String configurationName, final @NotNull Provider<Boolean> inferModulePath, final boolean modular) {
+    return project.files((Callable<Object>) () -> {
+      final Configuration config = project.getConfigurations().findByName(configurationName);
+      if (config == null) {
+        return Collections.emptyList();
+      } else if (!inferModulePath.get()) {
+        return modular ? config : Collections.emptyList();
+      }
+
+      final FileCollection modules = view(config, MODULE);
+      // artifacts without an artifact type are never transformed and appear in both views, so keep them on the module path
+      return modular ? modules : view(config, CLASSPATH).minus(modules);
+    });
+  }
+
+  private static FileCollection view(final Configuration config, final String modularity) {
+    // not lenient, so a failed resolution or transform fails the build rather than dropping the artifact from both paths
+    return config.getIncoming().artifactView(view -> {
+      view.getAttributes().attribute(MODULARITY_ATTRIBUTE, modularity);
+    }).getFiles();
+  }
+
+  @InputArtifact
+  @Classpath
+  public abstract Provider<FileSystemLocation> getInputArtifact();
+
+  @Override
+  public void transform(final @NotNull TransformOutputs outputs) {
+    final File input = this.getInputArtifact().get().getAsFile();
+    if (!input.exists()) {
+      return;
+    }
+
+    final ModularityDetecter.Modularity modularity = ModularityDetecter.inspect(input);
+    LOGGER.debug("Detected {} as {}", input, modularity.isModule() ? "module " + modularity.name() : "non-modular");
+    if (modularity.isModule() == this.getParameters().getModular().get()) {
+      if (input.isDirectory()) {
+        outputs.dir(input);
+      } else {
+        outputs.file(input);
+      }
+    }
+  }
+}
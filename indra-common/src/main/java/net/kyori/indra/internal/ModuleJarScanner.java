@@ -0,0 +1,396 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.internal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Read the packages and module descriptors of a jar from its central directory alone.
+ *
+ * <p>Entry names are compared as raw bytes against the previously seen package, so a string is only created for each
+ * change of package rather than for every entry. Only the contents of module descriptors are read.</p>
+ *
+ * <p>Packages and descriptors are indexed by the multi-release version they are found in, with
+ * {@value #BASE_RELEASE} for the root of the jar.</p>
+ */
+public final class ModuleJarScanner {
+  private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+  private static final int ZIP64_LOCATOR = 0x07064b50;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int ZIP64_EXTRA = 0x0001;
+  private static final int CENTRAL_HEADER = 0x02014b50;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int LOCAL_HEADER = 0x04034b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int MAX_COMMENT_LENGTH = 0xffff;
+  private static final long MAGIC_32 = 0xffffffffL;
+  private static final int METHOD_STORED = 0;
+  private static final int METHOD_DEFLATED = 8;
+
+  private static final byte[] META_INF = "META-INF/".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] VERSIONS = "META-INF/versions/".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] MODULE_INFO = "module-info.class".getBytes(StandardCharsets.UTF_8);
+  private static final long NO_PACKAGE = -1;
+  private static final int INVALID_RELEASE = -1;
+
+  /**
+   * The release of entries outside of {@code META-INF/versions}.
+   */
+  public static final int BASE_RELEASE = 0;
+
+  private final NavigableMap<Integer, Set<String>> packages;
+  private final NavigableMap<Integer, byte[]> moduleDescriptors;
+
+  private ModuleJarScanner(final NavigableMap<Integer, Set<String>> packages, final NavigableMap<Integer, byte[]> moduleDescriptors) {
+    this.packages = Collections.unmodifiableNavigableMap(packages);
+    this.moduleDescriptors = Collections.unmodifiableNavigableMap(moduleDescriptors);
+  }
+
+  /**
+   * Scan a jar file.
+   *
+   * @param jar the jar to scan
+   * @return the scan results
+   * @throws IOException if the jar could not be read, or is not a valid zip file
+   */
+  public static @NotNull ModuleJarScanner scan(final @NotNull Path jar) throws IOException {
+    try (final FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+      final ByteBuffer directory = centralDirectory(channel);
+      final NavigableMap<Integer, Set<String>> packages = new TreeMap<>();
+      final NavigableMap<Integer, byte[]> descriptors = new TreeMap<>();
+
+      byte[] lastPackage = new byte[64];
+      int lastPackageLength = -1;
+      int lastRelease = INVALID_RELEASE;
+      while (directory.remaining() >= CENTRAL_HEADER_SIZE && directory.getInt(directory.position()) == CENTRAL_HEADER) {
+        final int entry = directory.position();
+        final int method = directory.getShort(entry + 10) & 0xffff;
+        long compressedSize = directory.getInt(entry + 20) & MAGIC_32;
+        long size = directory.getInt(entry + 24) & MAGIC_32;
+        final int nameLength = directory.getShort(entry + 28) & 0xffff;
+        final int extraLength = directory.getShort(entry + 30) & 0xffff;
+        final int commentLength = directory.getShort(entry + 32) & 0xffff;
+        long localHeader = directory.getInt(entry + 42) & MAGIC_32;
+        final int name = entry + CENTRAL_HEADER_SIZE;
+        directory.position(name + nameLength + extraLength + commentLength);
+
+        if (nameLength == 0 || directory.get(name + nameLength - 1) == '/') continue; // directory
+        final int release = release(directory, name, nameLength);
+        if (release == INVALID_RELEASE) continue; // not visible to the JVM at any version
+
+        if (endsWith(directory, name, nameLength, MODULE_INFO)) {
+          final String path = new String(bytes(directory, name, nameLength), StandardCharsets.UTF_8);
+          if (ModularityDetecter.isModuleInfo(path)) {
+            if (size == MAGIC_32 || compressedSize == MAGIC_32 || localHeader == MAGIC_32) {
+              // actual values are in the zip64 extra field, in this order, when they do not fit in the header
+              int field = zip64Extra(directory, name + nameLength, extraLength);
+              if (size == MAGIC_32) {
+                size = directory.getLong(field);
+                field += 8;
+              }
+              if (compressedSize == MAGIC_32) {
+                compressedSize = directory.getLong(field);
+                field += 8;
+              }
+              if (localHeader == MAGIC_32) {
+                localHeader = directory.getLong(field);
+              }
+            }
+            descriptors.put(release, read(channel, localHeader, method, compressedSize, size));
+            continue;
+          }
+        }
+
+        final long range = packageRange(directory, name, nameLength);
+        if (range == NO_PACKAGE) continue;
+        final int start = (int) (range >>> 32);
+        final int length = (int) range - start;
+        if (release == lastRelease && length == lastPackageLength && rangeEquals(directory, start, lastPackage, length)) continue;
+
+        if (lastPackage.length < length) {
+          lastPackage = new byte[Math.max(length, lastPackage.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+          lastPackage[i] = directory.get(start + i);
+        }
+        lastPackageLength = length;
+        lastRelease = release;
+        packages.computeIfAbsent(release, $ -> new HashSet<>()).add(new String(lastPackage, 0, length, StandardCharsets.UTF_8).replace('/', '.'));
+      }
+      return new ModuleJarScanner(packages, descriptors);
+    }
+  }
+
+  /**
+   * Get the name of the package containing a file in a jar, using the same rules as {@link #scan(Path)}.
+   *
+   * @param file the path of a file in the jar
+   * @return the package name, or {@code null} if the file is not in a package
+   */
+  public static @Nullable String packageName(final @NotNull String file) {
+    final byte[] name = file.getBytes(StandardCharsets.UTF_8);
+    final long range = packageRange(ByteBuffer.wrap(name), 0, name.length);
+    if (range == NO_PACKAGE) return null;
+
+    final int start = (int) (range >>> 32);
+    return new String(name, start, (int) range - start, StandardCharsets.UTF_8).replace('/', '.');
+  }
+
+  /**
+   * All packages containing at least one file, at any release.
+   *
+   * @return the packages
+   */
+  public @NotNull Set<String> packages() {
+    return this.packagesVisibleAt(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Get the packages containing at least one file when the jar is used on a certain Java release.
+   *
+   * @param release the Java release
+   * @return the packages in the base jar or any versioned directory up to {@code release}
+   */
+  public @NotNull Set<String> packagesVisibleAt(final int release) {
+    final Set<String> result = new HashSet<>();
+    for (final Set<String> packages : this.packages.headMap(release, true).values()) {
+      result.addAll(packages);
+    }
+    return result;
+  }
+
+  /**
+   * Every release that has its own files in the jar.
+   *
+   * @return the releases, always including {@value #BASE_RELEASE}
+   */
+  public @NotNull NavigableSet<Integer> releases() {
+    final NavigableSet<Integer> releases = new TreeSet<>(this.packages.keySet());
+    releases.addAll(this.moduleDescriptors.keySet());
+    releases.add(BASE_RELEASE);
+    return releases;
+  }
+
+  /**
+   * The contents of every module descriptor, by the release it applies from.
+   *
+   * <p>The descriptor in effect on a release is the one with the greatest key not exceeding that release.</p>
+   *
+   * @return the module descriptors
+   */
+  public @NotNull NavigableMap<Integer, byte[]> moduleDescriptors() {
+    return this.moduleDescriptors;
+  }
+
+  /**
+   * Find the multi-release version an entry belongs to.
+   *
+   * @return the release, {@value #BASE_RELEASE} for entries outside of {@code META-INF/versions},
+   *     or {@link #INVALID_RELEASE} if the version directory is not a valid version
+   */
+  private static int release(final ByteBuffer buffer, final int name, final int length) {
+    if (!startsWith(buffer, name, length, VERSIONS)) return BASE_RELEASE;
+
+    int release = 0;
+    final int end = name + length;
+    for (int i = name + VERSIONS.length; i < end; i++) {
+      final byte b = buffer.get(i);
+      if (b == '/') {
+        return i == name + VERSIONS.length ? INVALID_RELEASE : release;
+      } else if (b < '0' || b > '9' || release > Integer.MAX_VALUE / 10 - 1) {
+        return INVALID_RELEASE;
+      }
+      release = release * 10 + (b - '0');
+    }
+    return INVALID_RELEASE;
+  }
+
+  /**
+   * Find the package portion of an entry name.
+   *
+   * @return the start and end offsets of the package, packed into the high and low halves of a long,
+   *     or {@link #NO_PACKAGE} if the entry is not in a package
+   */
+  private static long packageRange(final ByteBuffer buffer, final int name, final int length) {
+    int start = name;
+    final int end = name + length;
+    if (startsWith(buffer, name, length, VERSIONS)) { // META-INF/versions: strip prefix
+      int nextSlash = -1;
+      for (int i = name + VERSIONS.length; i < end; i++) {
+        if (buffer.get(i) == '/') {
+          nextSlash = i;
+          break;
+        }
+      }
+      if (nextSlash == -1) return NO_PACKAGE;
+      start = nextSlash + 1;
+    } else if (startsWith(buffer, name, length, META_INF)) { // META-INF/: ignore
+      return NO_PACKAGE;
+    }
+
+    for (int i = end - 1; i >= start; i--) {
+      if (buffer.get(i) == '/') {
+        return ((long) start << 32) | i;
+      }
+    }
+    return NO_PACKAGE;
+  }
+
+  private static ByteBuffer centralDirectory(final FileChannel channel) throws IOException {
+    final long fileSize = channel.size();
+    final int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_LENGTH);
+    final ByteBuffer tail = readFully(channel, fileSize - tailSize, tailSize);
+
+    int end = -1;
+    for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+      if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+        end = i;
+        break;
+      }
+    }
+    if (end == -1) {
+      throw new ZipException("No end of central directory record found");
+    }
+
+    long size = tail.getInt(end + 12) & MAGIC_32;
+    long offset = tail.getInt(end + 16) & MAGIC_32;
+    if ((size == MAGIC_32 || offset == MAGIC_32) && end >= ZIP64_LOCATOR_SIZE && tail.getInt(end - ZIP64_LOCATOR_SIZE) == ZIP64_LOCATOR) {
+      final long zip64End = tail.getLong(end - ZIP64_LOCATOR_SIZE + 8);
+      final ByteBuffer record = readFully(channel, zip64End, 56);
+      if (record.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY) {
+        throw new ZipException("Invalid zip64 end of central directory record");
+      }
+      size = record.getLong(40);
+      offset = record.getLong(48);
+    }
+    if (size > Integer.MAX_VALUE || offset + size > fileSize) {
+      throw new ZipException("Invalid central directory of " + size + " bytes at " + offset);
+    }
+    return readFully(channel, offset, (int) size);
+  }
+
+  private static int zip64Extra(final ByteBuffer buffer, final int extra, final int length) throws ZipException {
+    int field = extra;
+    while (field + 4 <= extra + length) {
+      final int id = buffer.getShort(field) & 0xffff;
+      final int size = buffer.getShort(field + 2) & 0xffff;
+      if (id == ZIP64_EXTRA) {
+        return field + 4;
+      }
+      field += 4 + size;
+    }
+    throw new ZipException("Missing zip64 extra field");
+  }
+
+  private static byte[] read(final FileChannel channel, final long localHeader, final int method, final long compressedSize, final long size) throws IOException {
+    if (size > Integer.MAX_VALUE || compressedSize > Integer.MAX_VALUE) {
+      throw new ZipException("Module descriptor too large");
+    }
+    final ByteBuffer header = readFully(channel, localHeader, LOCAL_HEADER_SIZE);
+    if (header.getInt(0) != LOCAL_HEADER) {
+      throw new ZipException("Invalid local file header at " + localHeader);
+    }
+    final long data = localHeader + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xffff) + (header.getShort(28) & 0xffff);
+    final byte[] compressed = bytes(readFully(channel, data, (int) compressedSize), 0, (int) compressedSize);
+    switch (method) {
+      case METHOD_STORED:
+        return compressed;
+      case METHOD_DEFLATED:
+        final Inflater inflater = new Inflater(true);
+        try {
+          inflater.setInput(compressed);
+          final byte[] result = new byte[(int) size];
+          int read = 0;
+          while (read < result.length && !inflater.finished()) {
+            final int count = inflater.inflate(result, read, result.length - read);
+            if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+            read += count;
+          }
+          return read == result.length ? result : Arrays.copyOf(result, read);
+        } catch (final DataFormatException ex) {
+          throw new ZipException("Invalid compressed data: " + ex.getMessage());
+        } finally {
+          inflater.end();
+        }
+      default:
+        throw new ZipException("Unsupported compression method " + method);
+    }
+  }
+
+  private static ByteBuffer readFully(final FileChannel channel, final long position, final int length) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static byte[] bytes(final ByteBuffer buffer, final int offset, final int length) {
+    final byte[] result = new byte[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = buffer.get(offset + i);
+    }
+    return result;
+  }
+
+  private static boolean startsWith(final ByteBuffer buffer, final int offset, final int length, final byte[] prefix) {
+    return length >= prefix.length && rangeEquals(buffer, offset, prefix, prefix.length);
+  }
+
+  private static boolean endsWith(final ByteBuffer buffer, final int offset, final int length, final byte[] suffix) {
+    return length >= suffix.length && rangeEquals(buffer, offset + length - suffix.length, suffix, suffix.length);
+  }
+
+  private static boolean rangeEquals(final ByteBuffer buffer, final int offset, final byte[] other, final int length) {
+    for (int i = 0; i < length; i++) {
+      if (buffer.get(offset + i) != other[i]) return false;
+    }
+    return true;
+  }
+}
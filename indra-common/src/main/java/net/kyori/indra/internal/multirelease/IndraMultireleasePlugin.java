@@ -33,7 +33,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import javax.inject.Inject;
 import net.kyori.indra.Indra;
 import net.kyori.indra.IndraExtension;
-import net.kyori.indra.internal.ModularityDetecter;
+import net.kyori.indra.internal.ModularityCacheService;
+import net.kyori.indra.internal.ModularityTransform;
 import net.kyori.indra.internal.language.GroovySupport;
 import net.kyori.indra.internal.language.JavaSupport;
 import net.kyori.indra.internal.language.KotlinSupport;
@@ -133,6 +134,7 @@ public class IndraMultireleasePlugin implements ProjectPlugin {
     plugins.withType(JavaBasePlugin.class, $ -> {
       this.languageSupports = this.initLanguageSupports(project, project.getObjects());
       final SourceSetContainer sourceSets = extensions.getByType(SourceSetContainer.class);
+      ModularityTransform.register(project.getDependencies());
       this.configureMultiRelease(project, tasks, project.getDependencies(), sourceSets);
 
       // Then configure standard extra options for main source set and test source set
@@ -249,11 +251,17 @@ public class IndraMultireleasePlugin implements ProjectPlugin {
         final NamedDomainObjectProvider<Configuration> baseApiElements = project.getConfigurations().getNames().contains(base.getApiElementsConfigurationName()) ? project.getConfigurations().named(base.getApiElementsConfigurationName()) : null;
         final NamedDomainObjectProvider<Configuration> baseRuntimeElements = project.getConfigurations().getNames().contains(base.getRuntimeElementsConfigurationName()) ? project.getConfigurations().named(base.getRuntimeElementsConfigurationName()) : null;
 
+        // Independent variants only build on the base source set, so they can compile concurrently
+        final boolean independent = extension.independentVariants().get();
+        // A shared toolchain lets every variant reuse the same compiler daemon
+        final boolean shareToolchain = extension.shareCompilerToolchain().get();
+        final int maxVersion = versions.length == 0 ? -1 : versions[versions.length - 1];
+
         for (int idx = 0, length = versions.length; idx < length; ++idx) {
           final int version = versions[idx];
           // Configure classpath
           final SourceSet parent;
-          if (idx == 0) {
+          if (idx == 0 || independent) {
             parent = base;
           } else {
             parent = sourceSets.getByName(MultireleaseSourceSetImpl.versionName(base, versions[idx - 1]));
@@ -275,14 +283,14 @@ public class IndraMultireleasePlugin implements ProjectPlugin {
           final MultireleaseModulePatchArgumentProvider modulePatch = new MultireleaseModulePatchArgumentProvider(p.getObjects());
           modulePatch.getModuleName().set(extension.moduleName());
           modulePatch.getClassDirectories().from(base.getOutput());
-          for (int i = 0; i < idx; ++i) {
+          for (int i = 0; i < idx && !independent; ++i) {
             modulePatch.getClassDirectories().from(sourceSets.named(MultireleaseSourceSetImpl.versionName(base, versions[i])).map(SourceSet::getOutput));
           }
 
           this.configureLanguages(
             project,
             variant,
-            indra.javaVersions().actualVersion().map(standard -> Math.max(standard, version)),
+            indra.javaVersions().actualVersion().map(standard -> Math.max(standard, shareToolchain ? maxVersion : version)),
             project.provider(() -> version)
           );
           final TaskProvider<JavaCompile> compileJava = tasks.named(variant.getCompileJavaTaskName(), JavaCompile.class, task -> {
@@ -549,17 +557,36 @@ public class IndraMultireleasePlugin implements ProjectPlugin {
       return false;
     }));
     declaresModule.finalizeValueOnRead();
+    final Provider<ModularityCacheService> modularity = ModularityCacheService.register(project);
     eclipse.getClasspath().getFile().whenMerged(model -> {
       final Classpath cp = (Classpath) model;
 
       // If we don't define our own module name, don't apply indra-specific behavior
       if (!declaresModule.get()) return;
+      final boolean infer = inferModulePath.get();
+      // Libraries resolved from a source set's configurations are sorted by the modularity transform
+      final Set<File> modules = new HashSet<>();
+      final Set<File> nonModules = new HashSet<>();
+      if (infer) {
+        for (final SourceSet set : sourceSets) {
+          for (final String configuration : Arrays.asList(set.getCompileClasspathConfigurationName(), set.getRuntimeClasspathConfigurationName())) {
+            modules.addAll(ModularityTransform.split(project, configuration, inferModulePath, true).getFiles());
+            nonModules.addAll(ModularityTransform.split(project, configuration, inferModulePath, false).getFiles());
+          }
+        }
+      }
 
       for (final ClasspathEntry entry : cp.getEntries()) {
         if (entry instanceof Library) {
           final Library library = (Library) entry;
           final File libraryFile = library.getLibrary().getFile();
-          if (ModularityDetecter.isModule(libraryFile, inferModulePath.get())) {
+          final boolean isModule;
+          if (!infer || nonModules.contains(libraryFile)) {
+            isModule = false;
+          } else {
+            isModule = modules.contains(libraryFile) || modularity.get().inspect(libraryFile).isModule();
+          }
+          if (isModule) {
             library.getEntryAttributes().put(ECLIPSE_MODULE_ATTRIBUTE, "true");
           }
         } else if (entry instanceof ProjectDependency) {
@@ -580,6 +607,7 @@ public class IndraMultireleasePlugin implements ProjectPlugin {
       }
       return target;
     });
+    final Provider<Boolean> inferModulePath = project.getExtensions().getByType(JavaPluginExtension.class).getModularity().getInferModulePath();
     final TaskProvider<JDeps> provider = project.getTasks().register(set.getTaskName("validate", "Module"), JDeps.class, jdeps -> {
       jdeps.setGroup(LifecycleBasePlugin.VERIFICATION_GROUP);
       jdeps.onlyIf(t -> multirelease.moduleName().isPresent());
@@ -592,8 +620,7 @@ public class IndraMultireleasePlugin implements ProjectPlugin {
         }
         return item;
       }));
-      jdeps.getModulePath().from(set.getRuntimeClasspath().minus(set.getOutput()));
-      jdeps.getModulePath().from(set.getCompileClasspath());
+      addSplitClasspath(project, jdeps, set, inferModulePath, set.getOutput());
       final TaskContainer tasks = project.getTasks();
       if (tasks.getNames().contains(set.getJarTaskName())) {
         jdeps.getModulePath().from(tasks.named(set.getJarTaskName(), Jar.class).map(DefaultTask::getOutputs));
@@ -606,9 +633,20 @@ public class IndraMultireleasePlugin implements ProjectPlugin {
 
     multirelease.configureVariants(details -> {
       provider.configure(jdeps -> {
-        jdeps.getModulePath().from(details.variant().getCompileClasspath().minus(details.base().getOutput()).minus(details.variant().getOutput()));
-        jdeps.getModulePath().from(details.variant().getRuntimeClasspath().minus(details.base().getOutput()).minus(details.variant().getOutput()));
+        addSplitClasspath(project, jdeps, details.variant(), inferModulePath, details.base().getOutput().plus(details.variant().getOutput()));
       });
     });
   }
+
+  private static void addSplitClasspath(final Project project, final JDeps jdeps, final SourceSet set, final Provider<Boolean> inferModulePath, final FileCollection excluded) {
+    // Dependencies are split using the modularity transform, while anything else (such as the outputs of other source sets) stays on the module path
+    final FileCollection compileDependencies = project.getConfigurations().getByName(set.getCompileClasspathConfigurationName());
+    final FileCollection runtimeDependencies = project.getConfigurations().getByName(set.getRuntimeClasspathConfigurationName());
+    jdeps.getModulePath().from(set.getCompileClasspath().minus(compileDependencies).minus(excluded));
+    jdeps.getModulePath().from(set.getRuntimeClasspath().minus(runtimeDependencies).minus(excluded));
+    for (final String configuration : Arrays.asList(set.getCompileClasspathConfigurationName(), set.getRuntimeClasspathConfigurationName())) {
+      jdeps.getModulePath().from(ModularityTransform.split(project, configuration, inferModulePath, true).minus(excluded));
+      jdeps.getClasspath().from(ModularityTransform.split(project, configuration, inferModulePath, false).minus(excluded));
+    }
+  }
 }
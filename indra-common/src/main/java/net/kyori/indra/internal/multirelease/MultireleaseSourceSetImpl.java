@@ -44,6 +44,8 @@ class MultireleaseSourceSetImpl implements MultireleaseSourceSet {
   private final DomainObjectSet<Integer> alternateVersions;
   private final Property<String> moduleName;
   private final Property<Boolean> applyToJavadoc;
+  private final Property<Boolean> independentVariants;
+  private final Property<Boolean> shareCompilerToolchain;
   final Set<Action<MultireleaseVariantDetails>> alternateConfigurationActions = new HashSet<>();
   final Set<Action<? super CheckModuleExports>> exportValidation = new HashSet<>();
 
@@ -52,6 +54,8 @@ class MultireleaseSourceSetImpl implements MultireleaseSourceSet {
     this.alternateVersions = objects.domainObjectSet(Integer.class);
     this.moduleName = objects.property(String.class);
     this.applyToJavadoc = objects.property(Boolean.class).convention(false);
+    this.independentVariants = objects.property(Boolean.class).convention(false);
+    this.shareCompilerToolchain = objects.property(Boolean.class).convention(false);
   }
 
   @Override
@@ -95,4 +99,14 @@ class MultireleaseSourceSetImpl implements MultireleaseSourceSet {
   public Property<Boolean> applyToJavadoc() {
     return this.applyToJavadoc;
   }
+
+  @Override
+  public @NotNull Property<Boolean> independentVariants() {
+    return this.independentVariants;
+  }
+
+  @Override
+  public @NotNull Property<Boolean> shareCompilerToolchain() {
+    return this.shareCompilerToolchain;
+  }
 }
@@ -131,4 +131,50 @@ public interface MultireleaseSourceSet {
   default void applyToJavadoc(final boolean applyToJavadoc) {
     this.applyToJavadoc().set(applyToJavadoc);
   }
+
+  /**
+   * Configure whether multi-release variants are compiled independently of each other.
+   *
+   * <p>By default, each variant can reference classes from the variant for the next lower version, so variants must
+   * be compiled one after another. Independent variants only see the base source set, so they can be compiled
+   * concurrently when parallel execution is enabled.</p>
+   *
+   * @return a property controlling whether variants are independent
+   * @since 4.0.0
+   */
+  @NotNull Property<Boolean> independentVariants();
+
+  /**
+   * Configure whether multi-release variants are compiled independently of each other.
+   *
+   * @param independentVariants whether variants only see the base source set
+   * @see #independentVariants()
+   * @since 4.0.0
+   */
+  default void independentVariants(final boolean independentVariants) {
+    this.independentVariants().set(independentVariants);
+  }
+
+  /**
+   * Configure whether all multi-release variants are compiled with the same toolchain.
+   *
+   * <p>By default, each variant is compiled by a toolchain matching its version. When shared, every variant is instead
+   * compiled by the highest required toolchain with the appropriate {@code --release} flag, so Gradle can reuse a
+   * single compiler daemon for all variants.</p>
+   *
+   * @return a property controlling whether variants share a compiler toolchain
+   * @since 4.0.0
+   */
+  @NotNull Property<Boolean> shareCompilerToolchain();
+
+  /**
+   * Configure whether all multi-release variants are compiled with the same toolchain.
+   *
+   * @param shareCompilerToolchain whether variants share a compiler toolchain
+   * @see #shareCompilerToolchain()
+   * @since 4.0.0
+   */
+  default void shareCompilerToolchain(final boolean shareCompilerToolchain) {
+    this.shareCompilerToolchain().set(shareCompilerToolchain);
+  }
 }
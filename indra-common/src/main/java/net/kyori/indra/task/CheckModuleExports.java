@@ -25,22 +25,26 @@ package net.kyori.indra.task;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import net.kyori.indra.internal.ModularityDetecter;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import net.kyori.indra.internal.ModuleJarScanner;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
 import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.SetProperty;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
 import org.gradle.api.tasks.Input;
-import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -53,17 +57,19 @@ import org.objectweb.asm.Opcodes;
 /**
  * Validate that all packages within a module are appropriately exported.
  *
+ * <p>The exported packages of a valid module are listed in a {@link #getReportFile() report file}, so results can be
+ * reused from the build cache.</p>
+ *
  * @since 2.1.0
  */
+@CacheableTask
 public abstract class CheckModuleExports extends DefaultTask {
-  private static final String MULTIRELEASE_PATH_PREFIX = "META-INF/versions/";
-
   /**
    * A file property referring to the module jar checked in this task.
    *
    * @return the checked module
    */
-  @InputFile
+  @Classpath
   public abstract RegularFileProperty getCheckedModule();
 
   /**
@@ -74,6 +80,21 @@ public abstract class CheckModuleExports extends DefaultTask {
   @Input
   public abstract SetProperty<String> getExclusions();
 
+  /**
+   * The file that the exported packages of the checked module are listed in.
+   *
+   * <p>Defaults to {@code build/reports/indra/<task name>.txt}.</p>
+   *
+   * @return the report file
+   * @since 4.0.0
+   */
+  @OutputFile
+  public abstract RegularFileProperty getReportFile();
+
+  public CheckModuleExports() {
+    this.getReportFile().convention(this.getProject().getLayout().getBuildDirectory().file("reports/indra/" + this.getName() + ".txt"));
+  }
+
   /**
    * Add package prefix exclusions for module validation.
    *
@@ -86,82 +107,84 @@ public abstract class CheckModuleExports extends DefaultTask {
   @TaskAction
   public void validateModule() throws IOException {
     final Set<String> exclusions = this.getExclusions().get();
-    final Set<String> knownPackages = new HashSet<>();
-    final Set<String> exports = new HashSet<>();
-    boolean moduleInfoSeen = false;
     // require that the checked module is a jar
     final File inspected = this.getCheckedModule().get().getAsFile();
     if (!inspected.getName().endsWith(".jar")) {
       throw new InvalidUserDataException("Inspected file '" + inspected + "' was not a jar, when the CheckModuleExports task expected it to be");
     }
 
-    // traverse the paths, build a set of directory entries
-    // if path is `module-info`, then read it and get the exported packages
-    try (final ZipFile jar = new ZipFile(inspected)) {
-      for (final Enumeration<? extends ZipEntry> entries = jar.entries(); entries.hasMoreElements();) {
-        final ZipEntry check = entries.nextElement();
-        if (ModularityDetecter.isModuleInfo(check.getName())) {
-          exports.addAll(this.exports(jar.getInputStream(check))); // todo: this just merges all multi-release module descriptors, should we refine our logic further?
-          moduleInfoSeen = true;
-        } else if (!check.isDirectory()) {
-          final @Nullable String packageName = packageNameOf(check.getName());
-          if (packageName != null) {
-            knownPackages.add(packageName);
-          }
-        }
-      }
-    }
-
-    this.getLogger().debug("Detected exported packages: {}", exports);
-    if (!moduleInfoSeen) {
+    // read package names from the central directory, and only parse the module descriptors
+    final ModuleJarScanner jar = ModuleJarScanner.scan(inspected.toPath());
+    if (jar.moduleDescriptors().isEmpty()) {
       throw new InvalidUserDataException("Jar file " + inspected + " did not contain any module descriptor!");
     }
 
-    final Set<String> exportProblems = this.checkExports(exports, knownPackages, exclusions);
+    // each release is checked against the descriptor in effect there, and only sees the packages visible on that release
+    final Map<Integer, Set<String>> exports = new ConcurrentSkipListMap<>();
+    final Map<Integer, Set<String>> exportProblems = new ConcurrentSkipListMap<>();
+    jar.releases().parallelStream().forEach(release -> {
+      final Map.Entry<Integer, byte[]> descriptor = jar.moduleDescriptors().floorEntry(release);
+      if (descriptor == null) return; // not a module on this release
+
+      final Set<String> releaseExports = this.exports(descriptor.getValue());
+      exports.put(release, releaseExports);
+      final Set<String> problems = this.checkExports(releaseExports, jar.packagesVisibleAt(release), exclusions);
+      if (!problems.isEmpty()) {
+        exportProblems.put(release, problems);
+      }
+    });
+
+    this.getLogger().debug("Detected exported packages: {}", exports);
     if (!exportProblems.isEmpty()) {
       this.getLogger().error("Some packages in {} were not exported when they were expected to be:", inspected);
-      for (final String problem : exportProblems) {
-        this.getLogger().error("- {}", problem);
+      for (final Map.Entry<Integer, Set<String>> release : exportProblems.entrySet()) {
+        for (final String problem : release.getValue()) {
+          this.getLogger().error("- {}{}", problem, describeRelease(release.getKey()));
+        }
       }
       throw new GradleException();
     }
+
+    final File report = this.getReportFile().get().getAsFile();
+    report.getParentFile().mkdirs();
+    final List<String> lines = new ArrayList<>();
+    for (final Map.Entry<Integer, Set<String>> release : exports.entrySet()) {
+      lines.add("# exports" + describeRelease(release.getKey()));
+      lines.addAll(new TreeSet<>(release.getValue()));
+    }
+    Files.write(report.toPath(), lines, StandardCharsets.UTF_8);
+  }
+
+  private static String describeRelease(final int release) {
+    return release == ModuleJarScanner.BASE_RELEASE ? "" : " (Java " + release + ")";
   }
 
   private Set<String> checkExports(final Set<String> exported, final Set<String> known, final Set<String> excludedPrefixes) {
-    final Set<String> problems = new HashSet<>(known);
-    problems.removeAll(exported);
-    for (final Iterator<String> it = known.iterator(); it.hasNext();) {
-      final String check = it.next();
-      for (final String prefix : excludedPrefixes) {
-        if (check.startsWith(prefix)) {
-          it.remove();
-          break;
-        }
+    final Set<String> problems = new TreeSet<>();
+    for (final String check : known) {
+      if (!exported.contains(check) && !isExcluded(check, excludedPrefixes)) {
+        problems.add(check);
       }
     }
     return problems;
   }
 
-  @VisibleForTesting
-  static @Nullable String packageNameOf(@NotNull String file) {
-    if (file.startsWith(MULTIRELEASE_PATH_PREFIX)) { // META-INF/versions: strip prefix
-      final int nextSlash = file.indexOf("/", MULTIRELEASE_PATH_PREFIX.length());
-      if (nextSlash == -1) {
-        return null;
+  private static boolean isExcluded(final String packageName, final Set<String> excludedPrefixes) {
+    for (final String prefix : excludedPrefixes) {
+      if (packageName.startsWith(prefix)) {
+        return true;
       }
-      file = file.substring(nextSlash + 1);
-    } else if (file.startsWith("META-INF/")) { // META-INF/: ignore
-      return null;
-    }
-    final int lastSlash = file.lastIndexOf('/');
-    if (lastSlash == -1) {
-      return null;
     }
-    return file.substring(0, lastSlash).replace('/', '.');
+    return false;
+  }
+
+  @VisibleForTesting
+  static @Nullable String packageNameOf(final @NotNull String file) {
+    return ModuleJarScanner.packageName(file);
   }
 
-  private Set<String> exports(final InputStream is) throws IOException {
-    final ClassReader reader = new ClassReader(is);
+  private Set<String> exports(final byte[] descriptor) {
+    final ClassReader reader = new ClassReader(descriptor);
     final Set<String> exports = new HashSet<>();
     reader.accept(new ModuleExportsVisitor(exports), ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
     return Collections.unmodifiableSet(exports);
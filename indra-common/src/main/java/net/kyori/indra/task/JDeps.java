@@ -23,38 +23,53 @@
  */
 package net.kyori.indra.task;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import javax.inject.Inject;
 import net.kyori.indra.util.Versioning;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
 import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.JavaVersion;
 import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
 import org.gradle.api.tasks.Input;
-import org.gradle.api.tasks.InputFiles;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Nested;
 import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.jvm.toolchain.JavaLanguageVersion;
 import org.gradle.jvm.toolchain.JavaLauncher;
 import org.gradle.jvm.toolchain.JavaToolchainService;
 import org.gradle.process.CommandLineArgumentProvider;
 import org.gradle.process.ExecOperations;
+import org.gradle.process.ExecResult;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Execute the {@code jdeps} tool.
  *
+ * <p>The output of {@code jdeps} is recorded in a {@link #getReportFile() report file}, so results can be reused from
+ * the build cache.</p>
+ *
  * @since 2.1.0
  */
+@CacheableTask
 public abstract class JDeps extends DefaultTask {
+  private static final int MINIMUM_WORKER_VERSION = 11; // the release indra is compiled for
   private final List<CommandLineArgumentProvider> argumentProviders = new ArrayList<>();
 
   /**
@@ -63,16 +78,26 @@ public abstract class JDeps extends DefaultTask {
    * @return a file collection representing the module path to pass to the tool
    * @since 2.1.0
    */
-  @InputFiles
+  @Classpath
   public abstract ConfigurableFileCollection getModulePath();
 
+  /**
+   * Get the class path to pass to the JDeps tool, for dependencies that are not modules.
+   *
+   * @return a file collection representing the class path to pass to the tool
+   * @since 4.0.0
+   */
+  @Optional
+  @Classpath
+  public abstract ConfigurableFileCollection getClasspath();
+
   /**
    * Set the Java instance to execute the {@code jdeps} tool with.
    *
    * @return a property pointing to the java launcher
    * @since 2.1.0
    */
-  @Input
+  @Nested
   public abstract Property<JavaLauncher> getJavaLauncher();
 
   /**
@@ -82,7 +107,7 @@ public abstract class JDeps extends DefaultTask {
    * @since 2.1.0
    */
   @Optional
-  @InputFiles
+  @Classpath
   public abstract ConfigurableFileCollection getProcessClasses();
 
   /**
@@ -116,6 +141,17 @@ public abstract class JDeps extends DefaultTask {
   @Optional
   public abstract Property<Integer> getMultireleaseVersion();
 
+  /**
+   * The file that {@code jdeps} output is written to.
+   *
+   * <p>Defaults to {@code build/reports/indra/<task name>.txt}.</p>
+   *
+   * @return the report file
+   * @since 4.0.0
+   */
+  @OutputFile
+  public abstract RegularFileProperty getReportFile();
+
   public void argumentProvider(final CommandLineArgumentProvider argumentProvider) {
     this.argumentProviders.add(requireNonNull(argumentProvider, "argumentProvider"));
   }
@@ -126,6 +162,9 @@ public abstract class JDeps extends DefaultTask {
   @Inject
   protected abstract ExecOperations getExecOps();
 
+  @Inject
+  protected abstract WorkerExecutor getWorkerExecutor();
+
   /**
    * Create a new task instance.
    *
@@ -137,6 +176,7 @@ public abstract class JDeps extends DefaultTask {
     this.getJavaLauncher().convention(this.getToolchains()
       .launcherFor(spec -> spec.getLanguageVersion().set(JavaLanguageVersion.of(Versioning.versionNumber(JavaVersion.current())))));
       this.getMultireleaseVersion().finalizeValueOnRead();
+    this.getReportFile().convention(this.getProject().getLayout().getBuildDirectory().file("reports/indra/" + this.getName() + ".txt"));
   }
 
   /**
@@ -181,22 +221,69 @@ public abstract class JDeps extends DefaultTask {
   /**
    * Execute the task.
    *
+   * <p>When the toolchain is the same Java version Gradle is running on, {@code jdeps} runs within the Gradle
+   * process. Other toolchains of Java 11 or newer run {@code jdeps} in a worker process, which Gradle keeps alive to
+   * be reused by later tasks with the same toolchain. Only older toolchains start a new {@code jdeps} process
+   * every time.</p>
+   *
    * @since 2.1.0
    */
   @TaskAction
   public void execute() {
-    // TODO: Use ToolProvider API when available? would need a J9 source set
-    final File jdeps = this.findJDeps();
-    this.getExecOps().exec(spec -> {
-      spec.setExecutable(jdeps);
-      if (this.getMultireleaseVersion().isPresent()) {
-        spec.args("--multi-release", this.getMultireleaseVersion().get().toString());
+    final List<String> args = new ArrayList<>();
+    if (this.getMultireleaseVersion().isPresent()) {
+      args.add("--multi-release");
+      args.add(this.getMultireleaseVersion().get().toString());
+    }
+    args.add("--module-path");
+    args.add(this.getModulePath().getAsPath());
+    if (!this.getClasspath().isEmpty()) {
+      args.add("--class-path");
+      args.add(this.getClasspath().getAsPath());
+    }
+    args.addAll(this.getAllArguments());
+    for (final File file : this.getProcessClasses()) {
+      args.add(file.getAbsolutePath());
+    }
+
+    final File report = this.getReportFile().get().getAsFile();
+    report.getParentFile().mkdirs();
+
+    final JavaLauncher launcher = this.getJavaLauncher().get();
+    final int toolchainVersion = launcher.getMetadata().getLanguageVersion().asInt();
+    final WorkQueue queue;
+    if (toolchainVersion == Versioning.versionNumber(JavaVersion.current()) && JDepsAction.tool().isPresent()) {
+      this.getLogger().info("Running jdeps in process, on the Gradle JVM");
+      queue = this.getWorkerExecutor().noIsolation();
+    } else if (toolchainVersion >= MINIMUM_WORKER_VERSION) {
+      this.getLogger().info("Running jdeps in a worker process, on the Java {} toolchain", toolchainVersion);
+      queue = this.getWorkerExecutor().processIsolation(spec -> spec.getForkOptions().setExecutable(launcher.getExecutablePath().getAsFile()));
+    } else {
+      final File jdeps = this.findJDeps();
+      this.getLogger().info("Running jdeps in a new process, from {}", jdeps);
+      final ByteArrayOutputStream output = new ByteArrayOutputStream();
+      final ExecResult result = this.getExecOps().exec(spec -> {
+        spec.setExecutable(jdeps);
+        spec.args(args);
+        spec.setStandardOutput(output);
+        spec.setIgnoreExitValue(true);
+      });
+      final String text = output.toString().trim();
+      if (!text.isEmpty()) {
+        this.getLogger().quiet(text);
       }
-      spec.args("--module-path", this.getModulePath().getAsPath()); // TODO: split between classpath and module path
-      spec.args(this.getAllArguments());
-      for (final File file : this.getProcessClasses()) {
-        spec.args(file.getAbsolutePath());
+      try {
+        Files.write(report.toPath(), output.toByteArray());
+      } catch (final IOException ex) {
+        throw new GradleException("Failed to write jdeps report to " + report, ex);
       }
-    }).assertNormalExitValue();
+      result.assertNormalExitValue();
+      return;
+    }
+
+    queue.submit(JDepsAction.class, params -> {
+      params.getArguments().set(args);
+      params.getReportFile().set(report);
+    });
   }
 }
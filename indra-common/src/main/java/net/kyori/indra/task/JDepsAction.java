@@ -0,0 +1,83 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.task;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.spi.ToolProvider;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * Run {@code jdeps} through the {@link ToolProvider} API of the JVM performing work.
+ */
+abstract class JDepsAction implements WorkAction<JDepsAction.Parameters> {
+  static final String TOOL_NAME = "jdeps";
+  private static final Logger LOGGER = Logging.getLogger(JDepsAction.class);
+
+  interface Parameters extends WorkParameters {
+    ListProperty<String> getArguments();
+
+    RegularFileProperty getReportFile();
+  }
+
+  static Optional<ToolProvider> tool() {
+    return ToolProvider.findFirst(TOOL_NAME);
+  }
+
+  @Override
+  public void execute() {
+    final ToolProvider jdeps = tool()
+      .orElseThrow(() -> new GradleException("The JVM at " + System.getProperty("java.home") + " does not provide the " + TOOL_NAME + " tool"));
+
+    final StringWriter report = new StringWriter();
+    // the standard error stream is shared with the rest of the JVM, so it is flushed but never closed
+    final PrintWriter err = new PrintWriter(System.err, true);
+    final int exitCode = jdeps.run(new PrintWriter(report), err, this.getParameters().getArguments().get().toArray(new String[0]));
+    err.flush();
+
+    final String text = report.toString().trim();
+    if (!text.isEmpty()) {
+      LOGGER.quiet(text);
+    }
+    try {
+      Files.write(this.getParameters().getReportFile().get().getAsFile().toPath(), report.toString().getBytes(StandardCharsets.UTF_8));
+    } catch (final IOException ex) {
+      throw new UncheckedIOException("Failed to write " + TOOL_NAME + " report", ex);
+    }
+    if (exitCode != 0) {
+      throw new GradleException(TOOL_NAME + " finished with non-zero exit value " + exitCode);
+    }
+  }
+}
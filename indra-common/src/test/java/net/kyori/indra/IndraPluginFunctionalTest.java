@@ -25,12 +25,19 @@ package net.kyori.indra;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.jar.Manifest;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import net.kyori.indra.test.FunctionalTestDisplayNameGenerator;
 import net.kyori.indra.test.IndraConfigCacheFunctionalTest;
 import net.kyori.indra.test.IndraFunctionalTest;
@@ -42,10 +49,16 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayNameGeneration;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Opcodes;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -153,6 +166,29 @@ class IndraPluginFunctionalTest {
     assertDoesNotThrow(() -> ctx.build("build"));
   }
 
+  @IndraConfigCacheFunctionalTest
+  void testModularitySplit(final TestContext ctx) throws IOException {
+    ctx.copyInput("build.gradle");
+    SettingsFactory.createSettings(ctx, "modularitySplit");
+    ctx.copyInput("App.java", "src/main/java/testproject/app/App.java");
+    ctx.copyInput("module-info.java", "src/main/java/module-info.java");
+
+    // The module still validates, with non-modular dependencies only on the class path
+    final BuildResult result = ctx.build("validateModule", "modularitySplit");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":validateModule").getOutcome());
+    final List<String> split = Files.readAllLines(ctx.outputDirectory().resolve("build/modularity-split.txt"), StandardCharsets.UTF_8);
+    assertEquals("class path: jsr305-3.0.2.jar", split.get(0));
+    final List<String> modulePath = Arrays.asList(split.get(1).substring("module path: ".length()).split(","));
+    assertTrue(modulePath.contains("annotations-24.0.1.jar"), () -> "Expected annotations on the module path " + modulePath);
+    assertFalse(modulePath.contains("jsr305-3.0.2.jar"), () -> "Expected jsr305 not to be on the module path " + modulePath);
+
+    // And Eclipse only marks modules as such
+    ctx.build("eclipseClasspath");
+    final Map<String, Boolean> eclipseEntries = eclipseModuleAttributes(ctx.outputDirectory().resolve(".classpath"));
+    assertEquals(Boolean.TRUE, eclipseEntry(eclipseEntries, "annotations-24.0.1.jar"));
+    assertEquals(Boolean.FALSE, eclipseEntry(eclipseEntries, "jsr305-3.0.2.jar"));
+  }
+
   @IndraConfigCacheFunctionalTest
   void testMultirelease(final TestContext ctx) throws IOException {
     ctx.copyInput("build.gradle");
@@ -193,6 +229,130 @@ class IndraPluginFunctionalTest {
     // TODO: test that multirelease tests work
   }
 
+  @IndraConfigCacheFunctionalTest
+  void testMultireleaseIndependentVariants(final TestContext ctx) throws IOException {
+    ctx.copyInput("build.gradle");
+    SettingsFactory.createSettings(ctx, "multireleaseIndependent");
+
+    ctx.copyInput("j8/pkg/Actor.java", "src/main/java/pkg/Actor.java");
+    ctx.copyInput("j8/pkg/Main.java", "src/main/java/pkg/Main.java");
+    ctx.copyInput("j9/pkg/Actor.java", "src/main/java9/pkg/Actor.java");
+    ctx.copyInput("j17/pkg/Actor.java", "src/main/java17/pkg/Actor.java");
+
+    // Variants only depend on the base source set
+    final BuildResult result = ctx.build("compileJava17Java");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":compileJava17Java").getOutcome());
+    assertNull(result.task(":compileJava9Java"), "java 17 variant should not depend on the java 9 variant");
+
+    // Bytecode is still targeted per variant, despite the shared toolchain
+    ctx.build("jar", "--parallel");
+    final Path jar = ctx.outputDirectory().resolve("build/libs/multireleaseIndependent-1.0.0-SNAPSHOT.jar");
+    assertTrue(Files.exists(jar));
+    assertBytecodeVersionEquals(jar, "pkg/Actor.class", 52);
+    assertBytecodeVersionEquals(jar, "META-INF/versions/9/pkg/Actor.class", 53);
+    assertBytecodeVersionEquals(jar, "META-INF/versions/17/pkg/Actor.class", 61);
+  }
+
+  @IndraConfigCacheFunctionalTest
+  void testValidateModuleToolchains(final TestContext ctx) throws IOException {
+    ctx.copyInput("build.gradle");
+    SettingsFactory.createSettings(ctx, "validateModuleToolchains");
+    ctx.copyInput("App.java", "src/main/java/testproject/app/App.java");
+    final Path moduleInfo = ctx.outputDirectory().resolve("src/main/java/module-info.java");
+
+    // the build JVM runs jdeps itself, while any other toolchain gets a worker
+    final int buildJvm = Runtime.version().feature();
+    final int otherJvm = buildJvm == 11 ? 17 : 11;
+    for (final int toolchain : new int[] {buildJvm, otherJvm}) {
+      final String mode = toolchain == buildJvm ? "Running jdeps in process" : "Running jdeps in a worker process, on the Java " + toolchain + " toolchain";
+
+      Files.deleteIfExists(moduleInfo);
+      ctx.copyInput("good/module-info.java", "src/main/java/module-info.java");
+      final BuildResult good = ctx.build("validateModule", "-PvalidateToolchain=" + toolchain, "--info");
+      assertEquals(TaskOutcome.SUCCESS, good.task(":validateModule").getOutcome());
+      assertTrue(good.getOutput().contains(mode), good::getOutput);
+
+      Files.deleteIfExists(moduleInfo);
+      ctx.copyInput("bad/module-info.java", "src/main/java/module-info.java");
+      final BuildResult bad = ctx.runner("validateModule", "-PvalidateToolchain=" + toolchain, "--info").buildAndFail();
+      assertEquals(TaskOutcome.FAILED, bad.task(":validateModule").getOutcome());
+      assertTrue(bad.getOutput().contains(mode), bad::getOutput);
+      assertTrue(bad.getOutput().contains("org.jetbrains.annotations"), bad::getOutput);
+    }
+  }
+
+  @IndraConfigCacheFunctionalTest
+  void testValidationCaching(final TestContext ctx) throws IOException {
+    ctx.copyInput("build.gradle");
+    SettingsFactory.createSettings(ctx, "validationCaching");
+    ctx.copyInput("App.java", "src/main/java/testproject/app/App.java");
+    ctx.copyInput("module-info.java", "src/main/java/module-info.java");
+    final String[] tasks = {":validateModule", ":checkModuleExports"};
+
+    final BuildResult first = ctx.build("validateModule", "checkModuleExports", "--build-cache");
+    for (final String task : tasks) {
+      assertEquals(TaskOutcome.SUCCESS, first.task(task).getOutcome(), task);
+    }
+    final Path reports = ctx.outputDirectory().resolve("build/reports/indra");
+    final List<String> validateReport = Files.readAllLines(reports.resolve("validateModule.txt"), StandardCharsets.UTF_8);
+    assertTrue(validateReport.stream().anyMatch(line -> line.contains("testproject.app")), () -> String.join("\n", validateReport));
+    final List<String> exportsReport = Files.readAllLines(reports.resolve("checkModuleExports.txt"), StandardCharsets.UTF_8);
+    assertEquals(Arrays.asList("# exports", "testproject.app"), exportsReport);
+
+    // nothing changed, so nothing runs
+    final BuildResult second = ctx.build("validateModule", "checkModuleExports", "--build-cache");
+    for (final String task : tasks) {
+      assertEquals(TaskOutcome.UP_TO_DATE, second.task(task).getOutcome(), task);
+    }
+
+    // once the outputs are gone, they are restored along with the reports
+    ctx.build("clean");
+    assertFalse(Files.exists(reports));
+    final BuildResult third = ctx.build("validateModule", "checkModuleExports", "--build-cache");
+    for (final String task : tasks) {
+      assertEquals(TaskOutcome.FROM_CACHE, third.task(task).getOutcome(), task);
+    }
+    assertEquals(validateReport, Files.readAllLines(reports.resolve("validateModule.txt"), StandardCharsets.UTF_8));
+    assertEquals(exportsReport, Files.readAllLines(reports.resolve("checkModuleExports.txt"), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Read whether each entry of an Eclipse classpath file has the {@code module} attribute set.
+   */
+  private static Map<String, Boolean> eclipseModuleAttributes(final Path classpath) throws IOException {
+    final Document document;
+    try {
+      document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(classpath.toFile());
+    } catch (final ParserConfigurationException | SAXException ex) {
+      return fail("Could not parse " + classpath, ex);
+    }
+
+    final Map<String, Boolean> result = new HashMap<>();
+    final NodeList entries = document.getElementsByTagName("classpathentry");
+    for (int i = 0; i < entries.getLength(); i++) {
+      final Element entry = (Element) entries.item(i);
+      boolean module = false;
+      final NodeList attributes = entry.getElementsByTagName("attribute");
+      for (int j = 0; j < attributes.getLength(); j++) {
+        final Element attribute = (Element) attributes.item(j);
+        if (attribute.getAttribute("name").equals("module")) {
+          module = Boolean.parseBoolean(attribute.getAttribute("value"));
+        }
+      }
+      result.put(entry.getAttribute("path"), module);
+    }
+    return result;
+  }
+
+  private static Boolean eclipseEntry(final Map<String, Boolean> entries, final String fileName) {
+    for (final Map.Entry<String, Boolean> entry : entries.entrySet()) {
+      if (entry.getKey().endsWith("/" + fileName)) {
+        return entry.getValue();
+      }
+    }
+    return fail("No Eclipse classpath entry for " + fileName + " in " + entries.keySet());
+  }
+
   private static void assertBytecodeVersionEquals(final Path jarPath, final String resource, final int bytecodeVersion) throws IOException {
     final VersionCollector collector = new VersionCollector();
     try (final ZipFile jar = new ZipFile(jarPath.toFile())) {
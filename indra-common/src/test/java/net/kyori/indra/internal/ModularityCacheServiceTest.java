@@ -0,0 +1,163 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import net.kyori.indra.test.IndraTesting;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModularityCacheServiceTest {
+  private static final String HEADER = "# indra modularity cache v1";
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testStoreFormat() throws IOException {
+    final File module = this.jar("module.jar", true);
+    final File library = this.jar("library.jar", false);
+    final Path store = this.tempDir.resolve("modularity.txt");
+    final ModularityCacheService service = service(store);
+    assertTrue(service.inspect(module).isModule());
+    assertFalse(service.inspect(library).isModule());
+    service.close();
+
+    final List<String> lines = Files.readAllLines(store, StandardCharsets.UTF_8);
+    assertEquals(HEADER, lines.get(0));
+    assertEquals(new HashSet<>(Arrays.asList(
+      line(module, true, "test.module"),
+      line(library, false, "")
+    )), new HashSet<>(lines.subList(1, lines.size())));
+  }
+
+  @Test
+  void testStoredResultIsUsed() throws IOException {
+    final File library = this.jar("library.jar", false);
+    final ModularityDetecter.Modularity result = this.inspectWithStored(library, line(library, true, "stored.module"));
+    assertTrue(result.isModule());
+    assertEquals("stored.module", result.name());
+  }
+
+  @Test
+  void testResultsAreKeptForDaemon() throws IOException {
+    final File library = this.jar("library.jar", false);
+    assertFalse(service(this.tempDir.resolve("unused.txt")).inspect(library).isModule());
+
+    // a later build reuses the result without consulting its store
+    assertFalse(this.inspectWithStored(library, line(library, true, "stored.module")).isModule());
+  }
+
+  @Test
+  void testStoreDropsStaleEntries() throws IOException {
+    final File library = this.jar("library.jar", false);
+    final File unused = this.jar("unused.jar", false);
+    final File changed = this.jar("changed.jar", false);
+    final String unusedLine = line(unused, false, "");
+    final String changedLine = line(changed, false, "");
+    final String missingLine = String.join("\t", this.tempDir.resolve("missing.jar").toString(), "1", "1", "false", "");
+    assertTrue(changed.setLastModified(changed.lastModified() - 10_000));
+
+    final Path store = this.tempDir.resolve("modularity.txt");
+    Files.write(store, Arrays.asList(HEADER, unusedLine, changedLine, missingLine), StandardCharsets.UTF_8);
+    final ModularityCacheService service = service(store);
+    service.inspect(library);
+    service.close();
+
+    final List<String> lines = Files.readAllLines(store, StandardCharsets.UTF_8);
+    assertEquals(HEADER, lines.get(0));
+    assertEquals(new HashSet<>(Arrays.asList(line(library, false, ""), unusedLine)), new HashSet<>(lines.subList(1, lines.size())));
+  }
+
+  @Test
+  void testChangedSizeInvalidates() throws IOException {
+    final File library = this.jar("library.jar", false);
+    final String line = String.join("\t", library.getAbsolutePath(), String.valueOf(library.length() + 1), String.valueOf(library.lastModified()), "true", "stored.module");
+    assertFalse(this.inspectWithStored(library, line).isModule());
+  }
+
+  @Test
+  void testChangedModificationTimeInvalidates() throws IOException {
+    final File library = this.jar("library.jar", false);
+    final String line = line(library, true, "stored.module");
+    assertTrue(library.setLastModified(library.lastModified() - 10_000));
+    assertFalse(this.inspectWithStored(library, line).isModule());
+  }
+
+  @Test
+  void testOtherPathIsNotUsed() throws IOException {
+    final File library = this.jar("library.jar", false);
+    final File other = this.jar("other.jar", false);
+    final String line = String.join("\t", other.getAbsolutePath(), String.valueOf(library.length()), String.valueOf(library.lastModified()), "true", "stored.module");
+    assertFalse(this.inspectWithStored(library, line).isModule());
+  }
+
+  @Test
+  void testUnknownStoreVersionIsIgnored() throws IOException {
+    final File library = this.jar("library.jar", false);
+    final Path store = this.tempDir.resolve("modularity.txt");
+    Files.write(store, Arrays.asList("# indra modularity cache v0", line(library, true, "stored.module")), StandardCharsets.UTF_8);
+    assertFalse(service(store).inspect(library).isModule());
+  }
+
+  private ModularityDetecter.Modularity inspectWithStored(final File library, final String line) throws IOException {
+    final Path store = this.tempDir.resolve("modularity.txt");
+    Files.write(store, Arrays.asList(HEADER, line), StandardCharsets.UTF_8);
+    return service(store).inspect(library);
+  }
+
+  private File jar(final String name, final boolean module) throws IOException {
+    final Path jar = this.tempDir.resolve(name);
+    final Map<String, byte[]> entries = module
+      ? Collections.singletonMap("module-info.class", TestJars.moduleDescriptor("test.module"))
+      : Collections.singletonMap("pkg/Test.class", new byte[0]);
+    TestJars.write(jar, ZipEntry.DEFLATED, entries);
+    return jar.toFile();
+  }
+
+  private static String line(final File library, final boolean module, final String name) {
+    return String.join("\t", library.getAbsolutePath(), String.valueOf(library.length()), String.valueOf(library.lastModified()), String.valueOf(module), name);
+  }
+
+  // each test project is its own build, with its own service
+  private static ModularityCacheService service(final Path store) {
+    return IndraTesting.project().getGradle().getSharedServices()
+      .registerIfAbsent(ModularityCacheService.SERVICE_NAME, ModularityCacheService.class, spec -> spec.getParameters().getStore().set(store.toFile()))
+      .get();
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModularityDetecterTest {
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testModuleName() throws IOException {
+    final ModularityDetecter.Modularity result = ModularityDetecter.inspect(this.jar(TestJars.moduleDescriptor("test.module")));
+    assertTrue(result.isModule());
+    assertEquals("test.module", result.name());
+  }
+
+  @Test
+  void testUnreadableDescriptorIsStillModule() throws IOException {
+    final byte[] descriptor = TestJars.moduleDescriptor("test.module");
+    descriptor[7] = (byte) 0xff; // a major version from the far future
+    final ModularityDetecter.Modularity result = ModularityDetecter.inspect(this.jar(descriptor));
+    assertTrue(result.isModule());
+    assertNull(result.name());
+  }
+
+  private File jar(final byte[] descriptor) throws IOException {
+    final Path jar = this.tempDir.resolve("test.jar");
+    TestJars.write(jar, ZipEntry.DEFLATED, Collections.singletonMap("module-info.class", descriptor));
+    return jar.toFile();
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ModuleJarScannerTest {
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testStoredEntries() throws IOException {
+    this.assertMultiReleaseJar(ZipEntry.STORED);
+  }
+
+  @Test
+  void testDeflatedEntries() throws IOException {
+    this.assertMultiReleaseJar(ZipEntry.DEFLATED);
+  }
+
+  private void assertMultiReleaseJar(final int method) throws IOException {
+    final byte[] base = TestJars.moduleDescriptor("test.module", "a");
+    final byte[] java11 = TestJars.moduleDescriptor("test.module", "a", "b");
+    final Map<String, byte[]> entries = entries("a/", "a/A.class", "META-INF/MANIFEST.MF", "META-INF/versions/11/b/B.class");
+    entries.put("module-info.class", base);
+    entries.put("META-INF/versions/11/module-info.class", java11);
+    final Path jar = this.tempDir.resolve("test.jar");
+    TestJars.write(jar, method, entries);
+
+    final ModuleJarScanner scanner = ModuleJarScanner.scan(jar);
+    assertEquals(set(ModuleJarScanner.BASE_RELEASE, 11), scanner.releases());
+    assertEquals(set(ModuleJarScanner.BASE_RELEASE, 11), scanner.moduleDescriptors().keySet());
+    assertArrayEquals(base, scanner.moduleDescriptors().get(ModuleJarScanner.BASE_RELEASE));
+    assertArrayEquals(java11, scanner.moduleDescriptors().get(11));
+    assertEquals(set("a"), scanner.packagesVisibleAt(ModuleJarScanner.BASE_RELEASE));
+    assertEquals(set("a"), scanner.packagesVisibleAt(10));
+    assertEquals(set("a", "b"), scanner.packagesVisibleAt(11));
+  }
+
+  @Test
+  void testZip64() throws IOException {
+    final byte[] descriptor = TestJars.moduleDescriptor("test.module", "a.b");
+    final Map<String, byte[]> entries = entries("a/b/A.class", "META-INF/versions/17/a/c/C.class");
+    entries.put("module-info.class", descriptor);
+    final Path jar = this.tempDir.resolve("test.jar");
+    Files.write(jar, zip64(entries));
+    try (final ZipFile zip = new ZipFile(jar.toFile())) {
+      assertEquals(entries.size(), zip.size()); // the archive itself is valid
+    }
+
+    final ModuleJarScanner scanner = ModuleJarScanner.scan(jar);
+    assertEquals(set(ModuleJarScanner.BASE_RELEASE, 17), scanner.releases());
+    assertArrayEquals(descriptor, scanner.moduleDescriptors().get(ModuleJarScanner.BASE_RELEASE));
+    assertEquals(set("a.b"), scanner.packagesVisibleAt(ModuleJarScanner.BASE_RELEASE));
+    assertEquals(set("a.b", "a.c"), scanner.packages());
+  }
+
+  @Test
+  void testInterleavedPackages() throws IOException {
+    // the same package appears again after other packages, and at another release in between
+    final Map<String, byte[]> entries = entries(
+      "a/A.class",
+      "b/B.class",
+      "a/C.class",
+      "META-INF/versions/11/b/D.class",
+      "b/E.class",
+      "META-INF/versions/11/a/F.class",
+      "META-INF/versions/11/c/G.class",
+      "a/b/H.class",
+      "a/I.class"
+    );
+    final Path jar = this.tempDir.resolve("test.jar");
+    TestJars.write(jar, ZipEntry.DEFLATED, entries);
+
+    final ModuleJarScanner scanner = ModuleJarScanner.scan(jar);
+    assertEquals(set("a", "a.b", "b"), scanner.packagesVisibleAt(ModuleJarScanner.BASE_RELEASE));
+    assertEquals(set("a", "a.b", "b", "c"), scanner.packagesVisibleAt(11));
+  }
+
+  @Test
+  void testInvalidVersionDirectories() throws IOException {
+    final Map<String, byte[]> entries = entries(
+      "a/A.class",
+      "META-INF/versions/invalid/b/B.class",
+      "META-INF/versions/9a/c/C.class",
+      "META-INF/versions//d/D.class",
+      "META-INF/versions/99999999999/e/E.class",
+      "META-INF/versions/11"
+    );
+    entries.put("META-INF/versions/invalid/module-info.class", TestJars.moduleDescriptor("test.module"));
+    final Path jar = this.tempDir.resolve("test.jar");
+    TestJars.write(jar, ZipEntry.DEFLATED, entries);
+
+    final ModuleJarScanner scanner = ModuleJarScanner.scan(jar);
+    assertEquals(set(ModuleJarScanner.BASE_RELEASE), scanner.releases());
+    assertEquals(set(), scanner.moduleDescriptors().keySet());
+    assertEquals(set("a"), scanner.packages());
+  }
+
+  private static Map<String, byte[]> entries(final String... names) {
+    final Map<String, byte[]> entries = new LinkedHashMap<>();
+    for (final String name : names) {
+      entries.put(name, new byte[0]);
+    }
+    return entries;
+  }
+
+  @SafeVarargs
+  private static <T extends Comparable<T>> Set<T> set(final T... elements) {
+    return new TreeSet<>(Arrays.asList(elements));
+  }
+
+  /**
+   * Write stored entries with every size and offset in zip64 extra fields, and a zip64 end of central directory.
+   */
+  private static byte[] zip64(final Map<String, byte[]> entries) {
+    final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    final ByteBuffer directory = ByteBuffer.allocate(16 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    for (final Map.Entry<String, byte[]> entry : entries.entrySet()) {
+      final byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+      final byte[] data = entry.getValue();
+      final CRC32 crc = new CRC32();
+      crc.update(data);
+      final long offset = buffer.position();
+
+      buffer.putInt(0x04034b50).putShort((short) 45).putShort((short) 0).putShort((short) ZipEntry.STORED)
+        .putInt(0).putInt((int) crc.getValue()).putInt(-1).putInt(-1)
+        .putShort((short) name.length).putShort((short) 20).put(name)
+        .putShort((short) 0x0001).putShort((short) 16).putLong(data.length).putLong(data.length)
+        .put(data);
+
+      directory.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0).putShort((short) ZipEntry.STORED)
+        .putInt(0).putInt((int) crc.getValue()).putInt(-1).putInt(-1)
+        .putShort((short) name.length).putShort((short) 28).putShort((short) 0)
+        .putShort((short) 0).putShort((short) 0).putInt(0).putInt(-1).put(name)
+        .putShort((short) 0x0001).putShort((short) 24).putLong(data.length).putLong(data.length).putLong(offset);
+    }
+
+    final long directoryOffset = buffer.position();
+    final int directorySize = directory.position();
+    buffer.put(directory.array(), 0, directorySize);
+    final long end = buffer.position();
+    buffer.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45).putInt(0).putInt(0)
+      .putLong(entries.size()).putLong(entries.size()).putLong(directorySize).putLong(directoryOffset);
+    buffer.putInt(0x07064b50).putInt(0).putLong(end).putInt(1);
+    buffer.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) -1).putShort((short) -1)
+      .putInt(-1).putInt(-1).putShort((short) 0);
+    return Arrays.copyOf(buffer.array(), buffer.position());
+  }
+}
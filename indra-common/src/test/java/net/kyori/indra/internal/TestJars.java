@@ -0,0 +1,92 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ModuleVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Jars and module descriptors written by tests.
+ */
+public final class TestJars {
+  private TestJars() {
+  }
+
+  /**
+   * Create the contents of a {@code module-info.class}.
+   *
+   * @param name the module name
+   * @param exports the exported packages
+   * @return the descriptor
+   */
+  public static byte[] moduleDescriptor(final String name, final String... exports) {
+    final ClassWriter writer = new ClassWriter(0);
+    writer.visit(Opcodes.V9, Opcodes.ACC_MODULE, "module-info", null, null, null);
+    final ModuleVisitor module = writer.visitModule(name, 0, null);
+    module.visitRequire("java.base", Opcodes.ACC_MANDATED, null);
+    for (final String export : exports) {
+      module.visitExport(export.replace('.', '/'), 0);
+    }
+    module.visitEnd();
+    writer.visitEnd();
+    return writer.toByteArray();
+  }
+
+  /**
+   * Write a jar with every entry using the same compression method.
+   *
+   * @param jar the file to write
+   * @param method the compression method, either {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+   * @param entries the entries, in order
+   * @throws IOException if the jar could not be written
+   */
+  public static void write(final Path jar, final int method, final Map<String, byte[]> entries) throws IOException {
+    try (final OutputStream os = Files.newOutputStream(jar);
+         final ZipOutputStream out = new ZipOutputStream(os)) {
+      for (final Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        final ZipEntry zipEntry = new ZipEntry(entry.getKey());
+        zipEntry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+          final CRC32 crc = new CRC32();
+          crc.update(entry.getValue());
+          zipEntry.setSize(entry.getValue().length);
+          zipEntry.setCompressedSize(entry.getValue().length);
+          zipEntry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(zipEntry);
+        out.write(entry.getValue());
+        out.closeEntry();
+      }
+    }
+  }
+}
@@ -23,12 +23,29 @@
  */
 package net.kyori.indra.task;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import net.kyori.indra.internal.TestJars;
+import net.kyori.indra.test.IndraTesting;
+import org.gradle.api.GradleException;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class CheckModuleExportsTest {
+  @TempDir
+  Path tempDir;
+
   @Test
   void testPackageNameOfClass() {
     assertEquals("net.kyori", CheckModuleExports.packageNameOf("net/kyori/Something.class"));
@@ -48,4 +65,70 @@ class CheckModuleExportsTest {
   void testMultireleasePackage() {
     assertEquals("net.kyori.indra", CheckModuleExports.packageNameOf("META-INF/versions/17/net/kyori/indra/Indra.class"));
   }
+
+  @Test
+  void testExclusionSuppressesProblem() throws IOException {
+    final Map<String, byte[]> entries = new LinkedHashMap<>();
+    entries.put("module-info.class", TestJars.moduleDescriptor("test.module", "a"));
+    entries.put("a/A.class", new byte[0]);
+    entries.put("a/internal/B.class", new byte[0]);
+    final CheckModuleExports task = this.task(entries);
+
+    assertThrows(GradleException.class, task::validateModule);
+
+    task.exclude("a.internal");
+    assertDoesNotThrow(task::validateModule);
+    assertEquals(Arrays.asList("# exports", "a"), Files.readAllLines(task.getReportFile().get().getAsFile().toPath(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testReleaseDescriptorExportsReleasePackage() throws IOException {
+    final Map<String, byte[]> entries = new LinkedHashMap<>();
+    entries.put("module-info.class", TestJars.moduleDescriptor("test.module", "a"));
+    entries.put("a/A.class", new byte[0]);
+    entries.put("META-INF/versions/11/module-info.class", TestJars.moduleDescriptor("test.module", "a", "b"));
+    entries.put("META-INF/versions/11/b/B.class", new byte[0]);
+    final CheckModuleExports task = this.task(entries);
+
+    // b is only checked on Java 11, where the descriptor exporting it applies
+    task.validateModule();
+    assertEquals(
+      Arrays.asList("# exports", "a", "# exports (Java 11)", "a", "b"),
+      Files.readAllLines(task.getReportFile().get().getAsFile().toPath(), StandardCharsets.UTF_8)
+    );
+  }
+
+  @Test
+  void testReleasePackageNotExportedByReleaseDescriptor() throws IOException {
+    final Map<String, byte[]> entries = new LinkedHashMap<>();
+    entries.put("module-info.class", TestJars.moduleDescriptor("test.module", "a", "b"));
+    entries.put("a/A.class", new byte[0]);
+    entries.put("META-INF/versions/11/module-info.class", TestJars.moduleDescriptor("test.module", "a"));
+    entries.put("META-INF/versions/11/b/B.class", new byte[0]);
+
+    assertThrows(GradleException.class, this.task(entries)::validateModule);
+  }
+
+  @Test
+  void testReleasesBeforeDescriptorAreSkipped() throws IOException {
+    // a jar that is not a module on Java 8
+    final Map<String, byte[]> entries = new LinkedHashMap<>();
+    entries.put("a/A.class", new byte[0]);
+    entries.put("META-INF/versions/9/module-info.class", TestJars.moduleDescriptor("test.module", "a"));
+    final CheckModuleExports task = this.task(entries);
+
+    task.validateModule();
+    assertEquals(
+      Arrays.asList("# exports (Java 9)", "a"),
+      Files.readAllLines(task.getReportFile().get().getAsFile().toPath(), StandardCharsets.UTF_8)
+    );
+  }
+
+  private CheckModuleExports task(final Map<String, byte[]> entries) throws IOException {
+    final Path jar = this.tempDir.resolve("test.jar");
+    TestJars.write(jar, ZipEntry.DEFLATED, entries);
+    final CheckModuleExports task = IndraTesting.project().getTasks().register("checkModuleExports", CheckModuleExports.class).get();
+    task.getCheckedModule().set(jar.toFile());
+    return task;
+  }
 }
@@ -0,0 +1,5 @@
+module testproject.app {
+  requires static org.jetbrains.annotations;
+
+  exports testproject.app;
+}
@@ -0,0 +1,7 @@
+package pkg;
+
+class Actor {
+  public static String test() {
+    return "Java 17";
+  }
+}
\ No newline at end of file
@@ -0,0 +1,7 @@
+package pkg;
+
+public class Main {
+  public static void main(final String[] args) {
+    System.out.println(Actor.test());
+  }
+}
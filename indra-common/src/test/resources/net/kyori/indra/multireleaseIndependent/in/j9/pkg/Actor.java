@@ -0,0 +1,9 @@
+package pkg;
+
+class Actor {
+  private static final System.Logger LOGGER = System.getLogger(Actor.class.getName());
+
+  public static String test() {
+    return "Java 9";
+  }
+}
\ No newline at end of file
@@ -0,0 +1,7 @@
+package testproject.app;
+
+public final class App {
+  public static void main(final String[] args) {
+    System.out.println("Hello");
+  }
+}
@@ -0,0 +1,6 @@
+module testproject.app {
+  // compile-only, so this should be `requires static`
+  requires org.jetbrains.annotations;
+
+  exports testproject.app;
+}
@@ -0,0 +1,3 @@
+module testproject.app {
+  exports testproject.app;
+}
@@ -0,0 +1,314 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.crossdoc;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.inject.Inject;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.component.ProjectComponentIdentifier;
+import org.gradle.api.artifacts.result.ResolvedArtifactResult;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.SetProperty;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+
+/**
+ * Assemble the javadoc of many projects into a single site.
+ *
+ * <p>Each project's javadoc is placed at the location given by the {@link #getUrlProvider() URL provider}, matching
+ * the layout produced by {@link CopyJavadoc}. Projects are copied and indexed in parallel, and the results are then
+ * combined into an {@code index.html} page linking to every package, and a {@code search-index.js} script listing
+ * every type, which the page loads to search types across all projects.</p>
+ *
+ * @since 4.0.0
+ */
+@CacheableTask
+public abstract class AggregateJavadoc extends DefaultTask {
+  static final String INDEX_PAGE = "index.html";
+  static final String SEARCH_INDEX = "search-index.js";
+  private static final String SEARCH_SCRIPT = "(function () {\n"
+    + "  var input = document.getElementById(\"search\");\n"
+    + "  var results = document.getElementById(\"search-results\");\n"
+    + "  input.addEventListener(\"input\", function () {\n"
+    + "    var query = input.value.trim().toLowerCase();\n"
+    + "    results.textContent = \"\";\n"
+    + "    if (!query) return;\n"
+    + "    for (var i = 0, shown = 0; i < aggregateSearchIndex.length && shown < 100; i++) {\n"
+    + "      var type = aggregateSearchIndex[i];\n"
+    + "      var name = type.p + \".\" + type.l;\n"
+    + "      if (name.toLowerCase().indexOf(query) < 0) continue;\n"
+    + "      var link = document.createElement(\"a\");\n"
+    + "      link.href = type.u;\n"
+    + "      link.textContent = name + \" (\" + type.m + \")\";\n"
+    + "      var item = document.createElement(\"li\");\n"
+    + "      item.appendChild(link);\n"
+    + "      results.appendChild(item);\n"
+    + "      shown++;\n"
+    + "    }\n"
+    + "  });\n"
+    + "})();\n";
+
+  @InputFiles
+  @PathSensitive(PathSensitivity.RELATIVE)
+  protected abstract ConfigurableFileCollection getJavadocFiles();
+
+  /**
+   * The javadoc directories of each project to aggregate.
+   *
+   * @return a property including javadoc artifacts
+   * @since 4.0.0
+   */
+  @Internal
+  public abstract SetProperty<ResolvedArtifactResult> getJavadocArtifacts();
+
+  /**
+   * A provider that computes the location of each project's javadoc within the site.
+   *
+   * @return a provider for the relative project URL
+   * @since 4.0.0
+   */
+  @Nested
+  public abstract Property<ProjectDocumentationUrlProvider> getUrlProvider();
+
+  /**
+   * A service caching computed project URLs across the build.
+   *
+   * <p>URLs are computed directly when no service is set.</p>
+   *
+   * @return the URL service property
+   * @since 4.0.0
+   */
+  @Internal
+  public abstract Property<ProjectDocumentationUrlService> getUrlService();
+
+  /**
+   * The title of the combined index page.
+   *
+   * @return the title property
+   * @since 4.0.0
+   */
+  @Input
+  public abstract Property<String> getTitle();
+
+  /**
+   * The root directory of the site.
+   *
+   * @return the output directory
+   * @since 4.0.0
+   */
+  @OutputDirectory
+  public abstract DirectoryProperty getOutputDirectory();
+
+  // project names and paths determine where each project is placed and how it is labelled
+  @Input
+  protected Map<String, String> getProjectNames() {
+    final Map<String, String> names = new TreeMap<>();
+    for (final ResolvedArtifactResult artifact : this.getJavadocArtifacts().get()) {
+      final ProjectComponentIdentifier identifier = (ProjectComponentIdentifier) artifact.getId().getComponentIdentifier();
+      names.put(identifier.getProjectPath(), identifier.getProjectName());
+    }
+    return names;
+  }
+
+  @Inject
+  protected abstract WorkerExecutor getWorkerExecutor();
+
+  @TaskAction
+  public void aggregate() throws IOException {
+    final Path site = this.getOutputDirectory().get().getAsFile().toPath();
+    final ProjectDocumentationUrlProvider urlProvider = this.getUrlProvider().get();
+    final WorkQueue queue = this.getWorkerExecutor().noIsolation();
+
+    final List<Module> modules = new ArrayList<>();
+    for (final ResolvedArtifactResult artifact : this.getJavadocArtifacts().get()) {
+      final File javadoc = artifact.getFile();
+      final ProjectComponentIdentifier identifier = (ProjectComponentIdentifier) artifact.getId().getComponentIdentifier();
+      if (!javadoc.isDirectory()) {
+        this.getLogger().info("Skipping javadoc in {} (for {}) because it was not a directory", javadoc, identifier.getProjectPath());
+        continue;
+      }
+
+      final Module module = new Module(
+        identifier.getProjectName(),
+        ProjectDocumentationUrlService.resolve(this.getUrlService(), urlProvider, identifier.getProjectName(), identifier.getProjectPath()),
+        new File(this.getTemporaryDir(), modules.size() + ".tsv")
+      );
+      modules.add(module);
+      queue.submit(AggregateJavadocModule.class, params -> {
+        params.getJavadocDirectory().set(javadoc);
+        params.getDestinationDirectory().set(site.resolve(module.url).toFile());
+        params.getRelativeUrl().set(module.url);
+        params.getSummaryFile().set(module.summary);
+      });
+    }
+    queue.await();
+
+    modules.sort(Comparator.comparing(module -> module.url));
+    this.removeStale(site, modules);
+    this.writeIndices(site, modules);
+  }
+
+  private void removeStale(final Path site, final List<Module> modules) throws IOException {
+    final Set<Path> retained = new HashSet<>();
+    for (final Module module : modules) {
+      retained.add(site.resolve(module.url));
+    }
+    Files.walkFileTree(site, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+        return retained.contains(dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+        if (!file.getParent().equals(site) || !(file.endsWith(INDEX_PAGE) || file.endsWith(SEARCH_INDEX))) {
+          Files.delete(file);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    CopyJavadoc.pruneEmptyDirectories(site);
+  }
+
+  /**
+   * Stream every module summary into the index page and search index at once.
+   */
+  private void writeIndices(final Path site, final List<Module> modules) throws IOException {
+    try (
+      final BufferedWriter page = Files.newBufferedWriter(site.resolve(INDEX_PAGE), StandardCharsets.UTF_8);
+      final BufferedWriter search = Files.newBufferedWriter(site.resolve(SEARCH_INDEX), StandardCharsets.UTF_8)
+    ) {
+      final String title = escapeHtml(this.getTitle().get());
+      page.write("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"utf-8\">\n<title>" + title + "</title>\n"
+        + "<script src=\"" + SEARCH_INDEX + "\"></script>\n</head>\n<body>\n<h1>" + title + "</h1>\n"
+        + "<input id=\"search\" type=\"search\" placeholder=\"Search types\" aria-label=\"Search types\" autocomplete=\"off\">\n"
+        + "<ul id=\"search-results\"></ul>\n");
+      search.write("var aggregateSearchIndex = [");
+
+      boolean firstType = true;
+      for (final Module module : modules) {
+        page.write("<h2><a href=\"" + escapeHtml(module.url) + "/index.html\">" + escapeHtml(module.name) + "</a></h2>\n<ul>\n");
+        try (final BufferedReader summary = Files.newBufferedReader(module.summary.toPath(), StandardCharsets.UTF_8)) {
+          String line;
+          while ((line = summary.readLine()) != null) {
+            final String[] parts = line.split("\t", -1);
+            if (parts[0].equals(AggregateJavadocModule.PACKAGE) && parts.length == 3) {
+              page.write("<li><a href=\"" + escapeHtml(parts[2]) + "\">" + escapeHtml(parts[1]) + "</a></li>\n");
+            } else if (parts[0].equals(AggregateJavadocModule.TYPE) && parts.length == 4) {
+              search.write(firstType ? "\n" : ",\n");
+              firstType = false;
+              search.write("{\"m\":");
+              writeJsonString(search, module.name);
+              search.write(",\"p\":");
+              writeJsonString(search, parts[1]);
+              search.write(",\"l\":");
+              writeJsonString(search, parts[2]);
+              search.write(",\"u\":");
+              writeJsonString(search, parts[3]);
+              search.write('}');
+            }
+          }
+        }
+        page.write("</ul>\n");
+      }
+
+      page.write("<script>\n" + SEARCH_SCRIPT + "</script>\n</body>\n</html>\n");
+      search.write("\n];\n");
+    } catch (final IOException ex) {
+      throw new GradleException("Failed to write aggregate javadoc index to " + site, ex);
+    }
+  }
+
+  private static String escapeHtml(final String text) {
+    final StringBuilder builder = new StringBuilder(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      switch (c) {
+        case '<': builder.append("&lt;"); break;
+        case '>': builder.append("&gt;"); break;
+        case '&': builder.append("&amp;"); break;
+        case '"': builder.append("&quot;"); break;
+        default: builder.append(c);
+      }
+    }
+    return builder.toString();
+  }
+
+  private static void writeJsonString(final Writer writer, final String value) throws IOException {
+    writer.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        writer.write('\\');
+        writer.write(c);
+      } else if (c < 0x20) {
+        writer.write(String.format("\\u%04x", (int) c));
+      } else {
+        writer.write(c);
+      }
+    }
+    writer.write('"');
+  }
+
+  static final class Module {
+    final String name;
+    final String url;
+    final File summary;
+
+    Module(final String name, final String url, final File summary) {
+      this.name = name;
+      this.url = url;
+      this.summary = summary;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.crossdoc;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Copy one project's javadoc into an aggregate site, and summarize the packages and types it documents.
+ *
+ * <p>The summary is written as tab-separated lines, either {@code P <package> <url>} or
+ * {@code T <package> <type> <url>}, with URLs relative to the root of the site.</p>
+ */
+abstract class AggregateJavadocModule implements WorkAction<AggregateJavadocModule.Parameters> {
+  static final String PACKAGE = "P";
+  static final String TYPE = "T";
+  private static final String MODULE_PREFIX = "module:";
+  private static final String TYPE_SEARCH_INDEX = "type-search-index.js";
+  private static final Pattern ENTRY = Pattern.compile("\\{([^{}]*)}");
+  private static final Pattern FIELD = Pattern.compile("\"(\\w+)\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"");
+
+  interface Parameters extends WorkParameters {
+    DirectoryProperty getJavadocDirectory();
+
+    DirectoryProperty getDestinationDirectory();
+
+    Property<String> getRelativeUrl();
+
+    RegularFileProperty getSummaryFile();
+  }
+
+  @Override
+  public void execute() {
+    final Parameters params = this.getParameters();
+    final Path javadoc = params.getJavadocDirectory().get().getAsFile().toPath();
+    final String url = params.getRelativeUrl().get();
+    try {
+      CopyJavadoc.synchronize(javadoc, params.getDestinationDirectory().get().getAsFile().toPath(), new CopyJavadoc.Transfer(false));
+
+      try (final BufferedWriter summary = Files.newBufferedWriter(params.getSummaryFile().get().getAsFile().toPath(), StandardCharsets.UTF_8)) {
+        summarizePackages(javadoc, url, summary);
+        summarizeTypes(javadoc, url, summary);
+      }
+    } catch (final IOException ex) {
+      throw new UncheckedIOException("Failed to aggregate javadoc from " + javadoc, ex);
+    }
+  }
+
+  private static void summarizePackages(final Path javadoc, final String url, final BufferedWriter summary) throws IOException {
+    Path list = javadoc.resolve(ExtractJavadocElementList.ELEMENT_LIST);
+    if (!Files.isRegularFile(list)) {
+      list = javadoc.resolve(ExtractJavadocElementList.PACKAGE_LIST);
+      if (!Files.isRegularFile(list)) return;
+    }
+
+    @Nullable String module = null;
+    try (final BufferedReader reader = Files.newBufferedReader(list, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty()) continue;
+        if (line.startsWith(MODULE_PREFIX)) {
+          module = line.substring(MODULE_PREFIX.length());
+          continue;
+        }
+        write(summary, PACKAGE, line, url + '/' + packagePath(module, line) + "package-summary.html");
+      }
+    }
+  }
+
+  private static void summarizeTypes(final Path javadoc, final String url, final BufferedWriter summary) throws IOException {
+    final Path index = javadoc.resolve(TYPE_SEARCH_INDEX);
+    if (!Files.isRegularFile(index)) return;
+
+    // typeSearchIndex = [{"p":"pkg","l":"Type"},...];
+    final Matcher entries = ENTRY.matcher(new String(Files.readAllBytes(index), StandardCharsets.UTF_8));
+    while (entries.find()) {
+      @Nullable String module = null;
+      @Nullable String pkg = null;
+      @Nullable String label = null;
+      final Matcher fields = FIELD.matcher(entries.group(1));
+      while (fields.find()) {
+        switch (fields.group(1)) {
+          case "m": module = fields.group(2); break;
+          case "p": pkg = fields.group(2); break;
+          case "l": label = fields.group(2); break;
+          default: break;
+        }
+      }
+      if (pkg == null || label == null) continue; // not a type, such as the 'All Classes' entry
+
+      write(summary, TYPE, pkg + '\t' + label, url + '/' + packagePath(module, pkg) + label + ".html");
+    }
+  }
+
+  private static String packagePath(final @Nullable String module, final String pkg) {
+    return (module == null ? "" : module + '/') + pkg.replace('.', '/') + '/';
+  }
+
+  private static void write(final BufferedWriter summary, final String kind, final String value, final String url) throws IOException {
+    summary.write(kind);
+    summary.write('\t');
+    summary.write(value);
+    summary.write('\t');
+    summary.write(url);
+    summary.newLine();
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2023 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.crossdoc;
+
+import org.gradle.api.artifacts.component.ProjectComponentIdentifier;
+import org.gradle.util.GradleVersion;
+import org.jetbrains.annotations.NotNull;
+
+// cross-compat: Gradle 8.3+ and <8.3
+final class BuildTreePaths {
+  static final boolean HAS_GRADLE_8_3 = GradleVersion.current().getBaseVersion().compareTo(GradleVersion.version("8.3")) >= 0;
+
+  private BuildTreePaths() {
+  }
+
+  /**
+   * Get a path for the project that is unique within the build tree.
+   *
+   * <p>Projects in the root build keep their plain project path.</p>
+   *
+   * @param identifier the project identifier
+   * @return the qualified path
+   */
+  @SuppressWarnings("deprecation")
+  static @NotNull String qualifiedPath(final @NotNull ProjectComponentIdentifier identifier) {
+    final String buildPath = HAS_GRADLE_8_3 ? identifier.getBuild().getBuildPath() : identifier.getBuild().getName();
+    final String projectPath = identifier.getProjectPath();
+    if (buildPath.equals(":")) {
+      return projectPath;
+    }
+
+    final String qualifiedBuildPath = buildPath.startsWith(":") ? buildPath : ":" + buildPath;
+    return projectPath.equals(":") ? qualifiedBuildPath : qualifiedBuildPath + projectPath;
+  }
+}
@@ -24,28 +24,64 @@
 package net.kyori.indra.crossdoc;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import javax.inject.Inject;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.DirectoryProperty;
-import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.file.FileType;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFiles;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Nested;
 import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.options.Option;
+import org.gradle.work.ChangeType;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Copy project javadoc into the `adventure-javadoc` directory tree
  *
+ * <p>Only files that have changed since the last run are copied, and only files that no longer exist in the
+ * generated javadoc are removed from the destination.</p>
+ *
+ * <p>HTML and CSS files can optionally be {@link #getMinify() minified}, and HTML, CSS and JavaScript files can be
+ * {@link #getCompress() pre-compressed} for serving, in parallel.</p>
+ *
+ * <p>Inputs are tracked relative to the javadoc root, so copies can be restored from the build cache in any checkout.</p>
+ *
  * @since 2.1.0
  */
+@CacheableTask
 public abstract class CopyJavadoc extends DefaultTask {
   @InputFiles
+  @Incremental
+  @PathSensitive(PathSensitivity.RELATIVE)
   public abstract ConfigurableFileCollection getJavadocFiles();
 
   @Internal
@@ -58,6 +94,54 @@ public abstract class CopyJavadoc extends DefaultTask {
   @OutputDirectory
   public abstract DirectoryProperty getOutputDirectory();
 
+  /**
+   * Whether to hard-link files into the output directory rather than copying them.
+   *
+   * <p>Linking avoids writing any file data when the javadoc and output directories are on the same file system.
+   * Files will be copied instead when a link cannot be created. Defaults to {@code false}.</p>
+   *
+   * @return the property controlling linking
+   * @since 4.0.0
+   */
+  @Input
+  public abstract Property<Boolean> getLinkFiles();
+
+  /**
+   * Whether to minify HTML and CSS files while copying them.
+   *
+   * <p>Minified files are always written rather than {@link #getLinkFiles() linked}. Defaults to {@code false}.</p>
+   *
+   * @return the property controlling minification
+   * @since 4.0.0
+   */
+  @Input
+  public abstract Property<Boolean> getMinify();
+
+  /**
+   * Whether to write a gzip-compressed {@code .gz} sibling for each HTML, CSS, and JavaScript file.
+   *
+   * <p>Compressed files can be served directly to clients accepting gzip encoding. Defaults to {@code false}.</p>
+   *
+   * @return the property controlling compression
+   * @since 4.0.0
+   */
+  @Input
+  public abstract Property<Boolean> getCompress();
+
+  /**
+   * A service caching computed project URLs across the build.
+   *
+   * <p>URLs are computed directly when no service is set.</p>
+   *
+   * @return the URL service property
+   * @since 4.0.0
+   */
+  @Internal
+  public abstract Property<ProjectDocumentationUrlService> getUrlService();
+
+  @Inject
+  protected abstract WorkerExecutor getWorkerExecutor();
+
   // Non user-modifiable properties
   @Internal
   protected abstract DirectoryProperty getRootDir();
@@ -68,28 +152,246 @@ public abstract class CopyJavadoc extends DefaultTask {
   @Input
   protected abstract Property<String> getProjectPath();
 
-  @Inject
-  protected abstract FileSystemOperations getFileSystemOps();
-
   public CopyJavadoc() {
     // relative to project root, <output>/<projectName>/<projectVersion>
+    final Property<ProjectDocumentationUrlService> urlService = this.getUrlService();
     final Provider<String> relativeUrl = this.getProjectName()
       .zip(this.getProjectPath(), (name, path) -> new Pair<>(name, path))
-      .zip(this.getDocumentationUrlProvider(), (namePath, provider) -> provider.createUrl(namePath.left, namePath.right));
+      .zip(this.getDocumentationUrlProvider(), (namePath, provider) -> ProjectDocumentationUrlService.resolve(urlService, provider, namePath.left, namePath.right));
     this.getOutputDirectory().set(this.getRootDir().dir(this.getOutputPath()).zip(relativeUrl, (base, path) -> base.dir(path)));
+    this.getLinkFiles().convention(false);
+    this.getMinify().convention(false);
+    this.getCompress().convention(false);
   }
 
   @TaskAction
-  public void doTransfer() {
-    final File dest = this.getOutputDirectory().get().getAsFile();
+  public void doTransfer(final InputChanges changes) {
+    final Path dest = this.getOutputDirectory().get().getAsFile().toPath();
+    final Transfer transfer = new Transfer(this.getLinkFiles().get());
+    if (this.getMinify().get() || this.getCompress().get()) {
+      transfer.process(this.getWorkerExecutor().noIsolation(), this.getMinify().get(), this.getCompress().get());
+    }
+
+    try {
+      Files.createDirectories(dest);
+      if (changes.isIncremental()) {
+        for (final FileChange change : changes.getFileChanges(this.getJavadocFiles())) {
+          if (change.getNormalizedPath().isEmpty()) continue; // the javadoc root itself
+
+          final Path target = dest.resolve(change.getNormalizedPath());
+          if (change.getChangeType() == ChangeType.REMOVED) {
+            transfer.remove(target);
+          } else if (change.getFileType() == FileType.DIRECTORY) {
+            Files.createDirectories(target);
+          } else if (change.getFileType() == FileType.FILE) {
+            transfer.transfer(change.getFile().toPath(), target);
+          }
+        }
+      } else {
+        this.synchronize(dest, transfer);
+      }
+      transfer.await();
+    } catch (final IOException ex) {
+      throw new GradleException("Failed to copy javadoc to " + dest, ex);
+    }
+
+    this.getLogger().info(
+      "Copied {} files, linked {} files, processed {} files, removed {} files, and left {} unchanged files in {}",
+      transfer.copied, transfer.linked, transfer.processed, transfer.removed, transfer.unchanged, dest
+    );
+  }
+
+  /**
+   * Make the destination match the javadoc files without any knowledge of earlier runs.
+   *
+   * <p>Files already in the destination are only replaced when their contents differ.</p>
+   */
+  private void synchronize(final Path dest, final Transfer transfer) throws IOException {
+    final Map<String, File> sources = new HashMap<>();
+    this.getJavadocFiles().getAsFileTree().visit(details -> {
+      if (!details.isDirectory()) {
+        sources.put(details.getRelativePath().getPathString(), details.getFile());
+      }
+    });
+    synchronize(sources, dest, transfer);
+  }
 
-    this.getFileSystemOps().delete(spec -> spec.delete(dest));
-    dest.mkdirs();
+  /**
+   * Make a destination directory match a source directory.
+   *
+   * @param source the source directory
+   * @param dest the destination directory
+   * @param transfer the transfer to perform changes with
+   * @throws IOException if unable to read or write files
+   */
+  static void synchronize(final Path source, final Path dest, final Transfer transfer) throws IOException {
+    final Map<String, File> sources = new HashMap<>();
+    Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+        sources.put(relativePath(source, file), file.toFile());
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    Files.createDirectories(dest);
+    synchronize(sources, dest, transfer);
+  }
 
-    this.getFileSystemOps().copy(spec -> {
-      spec.from(this.getJavadocFiles());
-      spec.into(dest);
+  private static void synchronize(final Map<String, File> sources, final Path dest, final Transfer transfer) throws IOException {
+    // Remove anything stale first, so that files can replace directories and vice versa
+    final List<Path> stale = new ArrayList<>();
+    Files.walkFileTree(dest, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+        final String path = relativePath(dest, file);
+        if (!sources.containsKey(path) && !transfer.isCompressedSibling(path, sources)) {
+          stale.add(file);
+        }
+        return FileVisitResult.CONTINUE;
+      }
     });
+    for (final Path file : stale) {
+      transfer.remove(file);
+    }
+    pruneEmptyDirectories(dest);
+
+    for (final Map.Entry<String, File> source : sources.entrySet()) {
+      final Path target = dest.resolve(source.getKey());
+      if (!transfer.processes(target) && Files.isRegularFile(target) && sameContents(source.getValue().toPath(), target)) {
+        transfer.unchanged++;
+      } else {
+        transfer.transfer(source.getValue().toPath(), target);
+      }
+    }
+  }
+
+  static void pruneEmptyDirectories(final Path root) throws IOException {
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+        if (!dir.equals(root)) {
+          try (final DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            if (!children.iterator().hasNext()) {
+              Files.delete(dir);
+            }
+          }
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  static String relativePath(final Path root, final Path file) {
+    return root.relativize(file).toString().replace(File.separatorChar, '/');
+  }
+
+  private static boolean sameContents(final Path a, final Path b) throws IOException {
+    if (Files.isSameFile(a, b)) return true;
+    if (Files.size(a) != Files.size(b)) return false;
+
+    final byte[] bufA = new byte[8192];
+    final byte[] bufB = new byte[8192];
+    try (final InputStream inA = Files.newInputStream(a); final InputStream inB = Files.newInputStream(b)) {
+      int read;
+      while ((read = inA.readNBytes(bufA, 0, bufA.length)) > 0) {
+        if (inB.readNBytes(bufB, 0, read) != read) return false;
+        for (int i = 0; i < read; i++) {
+          if (bufA[i] != bufB[i]) return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  static final class Transfer {
+    private boolean link;
+    private @Nullable WorkQueue queue;
+    private boolean minify;
+    private boolean compress;
+    int copied;
+    int linked;
+    int processed;
+    int removed;
+    int unchanged;
+
+    Transfer(final boolean link) {
+      this.link = link;
+    }
+
+    void process(final WorkQueue queue, final boolean minify, final boolean compress) {
+      this.queue = queue;
+      this.minify = minify;
+      this.compress = compress;
+    }
+
+    boolean processes(final Path target) {
+      return this.queue != null && ProcessJavadocFile.type(target) != null;
+    }
+
+    boolean isCompressedSibling(final String path, final Map<String, File> sources) {
+      if (!this.compress || !path.endsWith(ProcessJavadocFile.GZIP_EXTENSION)) return false;
+
+      final String original = path.substring(0, path.length() - ProcessJavadocFile.GZIP_EXTENSION.length());
+      return sources.containsKey(original) && ProcessJavadocFile.type(Paths.get(original)) != null;
+    }
+
+    void await() {
+      if (this.queue != null) {
+        this.queue.await();
+      }
+    }
+
+    void transfer(final Path source, final Path target) throws IOException {
+      if (this.processes(target)) {
+        this.queue.submit(ProcessJavadocFile.class, params -> {
+          params.getSource().set(source.toFile());
+          params.getTarget().set(target.toFile());
+          params.getMinify().set(this.minify);
+          params.getCompress().set(this.compress);
+        });
+        this.processed++;
+        return;
+      }
+
+      Files.createDirectories(target.getParent());
+      if (this.link) {
+        try {
+          // a link must replace the target rather than write through it, since the target may itself be a link to an older source
+          Files.deleteIfExists(target);
+          Files.createLink(target, source);
+          this.linked++;
+          return;
+        } catch (final IOException | UnsupportedOperationException ex) {
+          this.link = false; // most likely on different file systems, which won't change for the rest of this run
+        }
+      }
+      Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+      this.copied++;
+    }
+
+    void remove(final Path target) throws IOException {
+      if (Files.isDirectory(target)) {
+        Files.walkFileTree(target, new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+            Files.delete(file);
+            Transfer.this.removed++;
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+            Files.delete(dir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+      } else if (Files.deleteIfExists(target)) {
+        this.removed++;
+        if (this.processes(target) && Files.deleteIfExists(ProcessJavadocFile.compressedSibling(target))) {
+          this.removed++;
+        }
+      }
+    }
   }
 
   static final class Pair<A, B> {
@@ -0,0 +1,122 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.crossdoc;
+
+import net.kyori.mammoth.ProjectPlugin;
+import org.gradle.api.NamedDomainObjectProvider;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.ArtifactCollection;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.component.ProjectComponentIdentifier;
+import org.gradle.api.artifacts.type.ArtifactTypeDefinition;
+import org.gradle.api.attributes.Bundling;
+import org.gradle.api.attributes.Category;
+import org.gradle.api.attributes.DocsType;
+import org.gradle.api.attributes.Usage;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.plugins.ExtensionContainer;
+import org.gradle.api.plugins.PluginContainer;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.TaskContainer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Combine the javadoc of several projects with the {@link CrossdocPlugin crossdoc plugin} applied into one site.
+ *
+ * <p>Projects to include are declared as dependencies in the {@value #AGGREGATED_JAVADOC_CONFIGURATION_NAME}
+ * configuration. Their javadoc is laid out using the same {@link CrossdocExtension#projectDocumentationUrlProvider() URL provider}
+ * used for cross-linking, so links between projects keep working in the combined site.</p>
+ *
+ * @since 4.0.0
+ */
+public class CrossdocAggregatePlugin implements ProjectPlugin {
+  /**
+   * Name for the {@link AggregateJavadoc} task.
+   *
+   * @since 4.0.0
+   */
+  public static final String AGGREGATE_JAVADOC_TASK_NAME = "aggregateJavadoc";
+
+  /**
+   * The configuration used to declare projects whose javadoc should be aggregated.
+   *
+   * @since 4.0.0
+   */
+  public static final String AGGREGATED_JAVADOC_CONFIGURATION_NAME = "aggregatedJavadoc";
+
+  @Override
+  public void apply(
+    final @NotNull Project project,
+    final @NotNull PluginContainer plugins,
+    final @NotNull ExtensionContainer extensions,
+    final @NotNull TaskContainer tasks
+  ) {
+    project.getDependencies().getAttributesSchema().attribute(JavadocPackaging.JAVADOC_PACKAGING_ATTRIBUTE);
+    final CrossdocExtension extension = this.findOrCreateExtension(project, extensions);
+    final NamedDomainObjectProvider<Configuration> aggregated = this.createAggregatedConfiguration(project);
+    final Provider<ProjectDocumentationUrlService> urlService = CrossdocPlugin.registerUrlService(project);
+
+    final Provider<ArtifactCollection> javadoc = aggregated.map(c -> c.getIncoming()
+      .artifactView(view -> {
+        view.attributes(a -> a.attribute(ArtifactTypeDefinition.ARTIFACT_TYPE_ATTRIBUTE, ArtifactTypeDefinition.DIRECTORY_TYPE));
+        view.componentFilter(id -> id instanceof ProjectComponentIdentifier);
+        view.setLenient(true); // ignore projects without crossdoc applied
+      }).getArtifacts());
+
+    tasks.register(AGGREGATE_JAVADOC_TASK_NAME, AggregateJavadoc.class, t -> {
+      t.getJavadocFiles().from(javadoc.map(ArtifactCollection::getArtifactFiles));
+      t.getJavadocArtifacts().set(javadoc.flatMap(ArtifactCollection::getResolvedArtifacts));
+      t.getUrlProvider().set(extension.projectDocumentationUrlProvider());
+      t.getUrlService().set(urlService);
+      t.usesService(urlService);
+      t.getTitle().convention(project.provider(() -> project.getName()));
+      t.getOutputDirectory().set(project.getLayout().getBuildDirectory().dir("docs/" + t.getName()));
+    });
+  }
+
+  private CrossdocExtension findOrCreateExtension(final Project project, final ExtensionContainer extensions) {
+    final CrossdocExtension existing = extensions.findByType(CrossdocExtension.class);
+    if (existing != null) return existing;
+
+    return extensions.create(CrossdocExtension.class, CrossdocPlugin.EXTENSION_NAME, CrossdocExtensionImpl.class, project);
+  }
+
+  private NamedDomainObjectProvider<Configuration> createAggregatedConfiguration(final Project project) {
+    final ObjectFactory objects = project.getObjects();
+    return project.getConfigurations().register(AGGREGATED_JAVADOC_CONFIGURATION_NAME, c -> {
+      c.setCanBeResolved(true);
+      c.setCanBeConsumed(false);
+      c.setTransitive(false); // only aggregate explicitly declared projects
+
+      c.attributes(a -> {
+        // Matching the unpacked variant of the javadocElements configuration
+        a.attribute(Category.CATEGORY_ATTRIBUTE, objects.named(Category.class, Category.DOCUMENTATION));
+        a.attribute(Bundling.BUNDLING_ATTRIBUTE, objects.named(Bundling.class, Bundling.EXTERNAL));
+        a.attribute(DocsType.DOCS_TYPE_ATTRIBUTE, objects.named(DocsType.class, DocsType.JAVADOC));
+        a.attribute(Usage.USAGE_ATTRIBUTE, objects.named(Usage.class, Usage.JAVA_RUNTIME));
+        a.attribute(JavadocPackaging.JAVADOC_PACKAGING_ATTRIBUTE, objects.named(JavadocPackaging.class, JavadocPackaging.DIRECTORY));
+      });
+    });
+  }
+}
@@ -24,6 +24,7 @@
 package net.kyori.indra.crossdoc;
 
 import org.gradle.api.Action;
+import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
 
@@ -84,4 +85,30 @@ public interface CrossdocExtension {
    * @since 2.1.0
    */
   void nameBasedDocumentationUrlProvider(final Action<? super NameBasedProjectDocumentationUrlProvider> action);
+
+  /**
+   * URLs where the Javadoc of external modules is hosted, by module group.
+   *
+   * <p>URLs may contain the placeholders {@code {group}}, {@code {name}} and {@code {version}}, which are replaced
+   * with the coordinates of each module, for example {@code https://javadoc.io/doc/{group}/{name}/{version}/}.</p>
+   *
+   * <p>The javadoc of modules in these groups is resolved when generating links, and linked offline.
+   * Modules in other groups are never resolved.</p>
+   *
+   * @return the group documentation URL property
+   * @since 4.0.0
+   */
+  MapProperty<String, String> groupDocumentationUrls();
+
+  /**
+   * Set the URL where the Javadoc of external modules in a group is hosted.
+   *
+   * @param group the module group
+   * @param url the documentation URL, optionally containing placeholders
+   * @see #groupDocumentationUrls()
+   * @since 4.0.0
+   */
+  default void groupDocumentationUrl(final String group, final String url) {
+    this.groupDocumentationUrls().put(group, url);
+  }
 }
@@ -27,6 +27,7 @@ import javax.inject.Inject;
 import org.gradle.api.Action;
 import org.gradle.api.Project;
 import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
@@ -35,6 +36,7 @@ class CrossdocExtensionImpl implements CrossdocExtension {
   private final ObjectFactory objects;
   private final Property<String> baseUrlProperty;
   private final Property<ProjectDocumentationUrlProvider> docUrlProviderProperty;
+  private final MapProperty<String, String> groupDocumentationUrlsProperty;
   private final Provider<String> projectVersionProvider;
 
   @Inject
@@ -42,6 +44,7 @@ class CrossdocExtensionImpl implements CrossdocExtension {
     this.objects = objects;
     this.baseUrlProperty = objects.property(String.class);
     this.docUrlProviderProperty = objects.property(ProjectDocumentationUrlProvider.class);
+    this.groupDocumentationUrlsProperty = objects.mapProperty(String.class, String.class);
     this.projectVersionProvider = providers.provider(() -> String.valueOf(project.getVersion()));
 
     final NameBasedProjectDocumentationUrlProvider defaultProvider = this.objects.newInstance(NameBasedProjectDocumentationUrlProviderImpl.class);
@@ -59,6 +62,11 @@ class CrossdocExtensionImpl implements CrossdocExtension {
     return this.baseUrlProperty;
   }
 
+  @Override
+  public MapProperty<String, String> groupDocumentationUrls() {
+    return this.groupDocumentationUrlsProperty;
+  }
+
   @Override
   public void nameBasedDocumentationUrlProvider(final Action<? super NameBasedProjectDocumentationUrlProvider> action) {
     final NameBasedProjectDocumentationUrlProvider provider = this.objects.newInstance(NameBasedProjectDocumentationUrlProviderImpl.class);
@@ -23,14 +23,18 @@
  */
 package net.kyori.indra.crossdoc;
 
+import java.io.File;
+import java.io.IOException;
 import net.kyori.mammoth.ProjectPlugin;
 import org.gradle.api.Action;
+import org.gradle.api.GradleException;
 import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.NamedDomainObjectProvider;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
 import org.gradle.api.artifacts.ArtifactCollection;
 import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.artifacts.component.ProjectComponentIdentifier;
 import org.gradle.api.artifacts.dsl.DependencyHandler;
 import org.gradle.api.artifacts.type.ArtifactTypeDefinition;
@@ -38,13 +42,16 @@ import org.gradle.api.attributes.Bundling;
 import org.gradle.api.attributes.Category;
 import org.gradle.api.attributes.DocsType;
 import org.gradle.api.attributes.Usage;
+import org.gradle.api.file.Directory;
 import org.gradle.api.file.RegularFile;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.plugins.ExtensionContainer;
 import org.gradle.api.plugins.JavaLibraryPlugin;
 import org.gradle.api.plugins.JavaPlugin;
 import org.gradle.api.plugins.PluginContainer;
+import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskContainer;
 import org.gradle.api.tasks.TaskProvider;
 import org.gradle.api.tasks.javadoc.Javadoc;
@@ -76,6 +83,13 @@ public class CrossdocPlugin implements ProjectPlugin {
    */
   public static final String COPY_JAVADOC_TASK_NAME = "copyJavadoc";
 
+  /**
+   * Name for the main source set {@link GenerateElementList} task.
+   *
+   * @since 4.0.0
+   */
+  public static final String GENERATE_ELEMENT_LIST_TASK_NAME = "generateElementList";
+
   /**
    * The configuration used for resolving projects for javadoc linking.
    *
@@ -97,20 +111,23 @@ public class CrossdocPlugin implements ProjectPlugin {
     final @NotNull ExtensionContainer extensions,
     final @NotNull TaskContainer tasks
   ) {
-    // Register extension and attribute
+    // Register extension, attribute, and transforms
     this.prepareAttributeSchema(project.getDependencies());
+    this.registerTransforms(project.getDependencies(), project.getObjects());
     final CrossdocExtension extension = this.createExtension(project);
+    final Provider<ProjectDocumentationUrlService> urlService = registerUrlService(project);
 
     // Once we've had the java-library plugin applied, we can actually do our work
     plugins.withType(JavaLibraryPlugin.class, $ -> {
-      // Modify outgoing configurations to expose unpacked javadoc cross-project
+      // Modify outgoing configurations to expose packaged and unpacked javadoc cross-project
       final NamedDomainObjectProvider<Configuration> offlineLinkedJavadoc = this.createOfflineLinkedResolvableConfiguration(project);
-      this.addUnpackedResultToJavadocConfiguration(project);
+      final TaskProvider<GenerateElementList> elementList = this.registerElementListTask(project);
+      this.addUnpackedResultToJavadocConfiguration(project, elementList);
 
       // Then configure the javadoc task to link to project dependencies
-      this.configureJavadocTask(project, extension, offlineLinkedJavadoc);
+      this.configureJavadocTask(project, extension, urlService, offlineLinkedJavadoc);
       // And add a convenience task to copy this project's unpacked javadoc to a specific location.
-      this.registerCopyTask(project, extension);
+      this.registerCopyTask(project, extension, urlService);
     });
 
     // We don't depend on javadoc being configured before we're applied, but it has to happen eventually
@@ -124,14 +141,27 @@ public class CrossdocPlugin implements ProjectPlugin {
     });
   }
 
+  static Provider<ProjectDocumentationUrlService> registerUrlService(final Project project) {
+    return project.getGradle().getSharedServices().registerIfAbsent(ProjectDocumentationUrlService.SERVICE_NAME, ProjectDocumentationUrlService.class, spec -> {});
+  }
+
   private CrossdocExtension createExtension(final Project project) {
     return project.getExtensions().create(CrossdocExtension.class, EXTENSION_NAME, CrossdocExtensionImpl.class, project);
   }
 
-  private void addUnpackedResultToJavadocConfiguration(final Project project) {
+  private TaskProvider<GenerateElementList> registerElementListTask(final Project project) {
+    return project.getTasks().register(GENERATE_ELEMENT_LIST_TASK_NAME, GenerateElementList.class, t -> {
+      // todo: sensitive to tasks being created eagerly
+      t.getSources().from(project.getTasks().named(JavaPlugin.JAVADOC_TASK_NAME, Javadoc.class).map(Javadoc::getSource));
+      t.getOutputDirectory().set(project.getLayout().getBuildDirectory().dir("tmp/" + t.getName()));
+    });
+  }
+
+  private void addUnpackedResultToJavadocConfiguration(final Project project, final TaskProvider<GenerateElementList> elementList) {
     // Register unpacked Javadoc as an artifact for cross-linking
     project.getConfigurations().matching(c -> c.getName().equals(JavaPlugin.JAVADOC_ELEMENTS_CONFIGURATION_NAME)).configureEach(c -> {
       c.extendsFrom(project.getConfigurations().getByName(JavaPlugin.API_ELEMENTS_CONFIGURATION_NAME)); // include transitive dependencies
+      // the primary variant is the published javadoc jar, so it is left without a packaging attribute to keep its metadata unchanged
       c.getOutgoing().getVariants().create("files", v -> {
         final TaskProvider<Javadoc> javadocTask = project.getTasks().named(JavaPlugin.JAVADOC_TASK_NAME, Javadoc.class);
         v.artifact(javadocTask.map(it -> it.getDestinationDir()), a -> {
@@ -143,6 +173,17 @@ public class CrossdocPlugin implements ProjectPlugin {
           project.getObjects().named(JavadocPackaging.class, JavadocPackaging.DIRECTORY)
         );
       });
+      // and just the package index, which can be built without waiting on javadoc
+      c.getOutgoing().getVariants().create("elementList", v -> {
+        v.artifact(elementList.flatMap(GenerateElementList::getOutputDirectory), a -> {
+          a.builtBy(elementList);
+          a.setType(ArtifactTypeDefinition.DIRECTORY_TYPE); // never published
+        });
+        v.getAttributes().attribute(
+          JavadocPackaging.JAVADOC_PACKAGING_ATTRIBUTE,
+          project.getObjects().named(JavadocPackaging.class, JavadocPackaging.ELEMENT_LIST)
+        );
+      });
     });
   }
 
@@ -160,8 +201,8 @@ public class CrossdocPlugin implements ProjectPlugin {
         a.attribute(DocsType.DOCS_TYPE_ATTRIBUTE, objects.named(DocsType.class, DocsType.JAVADOC));
         a.attribute(Usage.USAGE_ATTRIBUTE, objects.named(Usage.class, Usage.JAVA_RUNTIME));
 
-        // plus this, to prefer directories
-        a.attribute(JavadocPackaging.JAVADOC_PACKAGING_ATTRIBUTE, objects.named(JavadocPackaging.class, JavadocPackaging.DIRECTORY));
+        // plus this, to only depend on package lists rather than a full javadoc run
+        a.attribute(JavadocPackaging.JAVADOC_PACKAGING_ATTRIBUTE, objects.named(JavadocPackaging.class, JavadocPackaging.ELEMENT_LIST));
       });
 
       c.extendsFrom(project.getConfigurations().getByName(JavaPlugin.API_ELEMENTS_CONFIGURATION_NAME));
@@ -173,13 +214,33 @@ public class CrossdocPlugin implements ProjectPlugin {
     handler.getAttributesSchema().attribute(JavadocPackaging.JAVADOC_PACKAGING_ATTRIBUTE);
   }
 
-  private void configureJavadocTask(final Project project, final CrossdocExtension extension, final NamedDomainObjectProvider<Configuration> offlineLinkedJavadoc) {
-    // link to modules in project
-    // TODO: figure out a way to get the build identifier
-    final BuildTreeComparer comparer = BuildTreeComparer.comparer(project);
+  private void registerTransforms(final DependencyHandler handler, final ObjectFactory objects) {
+    // the packaging attribute is left untouched, so results still show whether the producer applied crossdoc
+    handler.registerTransform(ExtractJavadocElementList.class, spec -> {
+      spec.getFrom().attribute(ArtifactTypeDefinition.ARTIFACT_TYPE_ATTRIBUTE, ArtifactTypeDefinition.JAR_TYPE);
+      spec.getTo().attribute(ArtifactTypeDefinition.ARTIFACT_TYPE_ATTRIBUTE, ExtractJavadocElementList.ARTIFACT_TYPE);
+    });
+    handler.registerTransform(PassElementList.class, spec -> {
+      spec.getFrom()
+        .attribute(ArtifactTypeDefinition.ARTIFACT_TYPE_ATTRIBUTE, ArtifactTypeDefinition.DIRECTORY_TYPE)
+        .attribute(JavadocPackaging.JAVADOC_PACKAGING_ATTRIBUTE, objects.named(JavadocPackaging.class, JavadocPackaging.ELEMENT_LIST));
+      spec.getTo().attribute(ArtifactTypeDefinition.ARTIFACT_TYPE_ATTRIBUTE, ExtractJavadocElementList.ARTIFACT_TYPE);
+    });
+  }
+
+  private void configureJavadocTask(
+    final Project project,
+    final CrossdocExtension extension,
+    final Provider<ProjectDocumentationUrlService> urlService,
+    final NamedDomainObjectProvider<Configuration> offlineLinkedJavadoc
+  ) {
+    // link to projects anywhere in the build tree, and external modules with a known documentation location
+    final MapProperty<String, String> groupUrls = extension.groupDocumentationUrls();
     final Provider<ArtifactCollection> jdLinks = offlineLinkedJavadoc.map(oLJ -> oLJ.getIncoming()
       .artifactView(view -> {
-        view.componentFilter(c -> c instanceof ProjectComponentIdentifier && comparer.isCurrentBuild((ProjectComponentIdentifier) c)); // only in-project, and not included builds
+        view.attributes(a -> a.attribute(ArtifactTypeDefinition.ARTIFACT_TYPE_ATTRIBUTE, ExtractJavadocElementList.ARTIFACT_TYPE));
+        view.componentFilter(c -> c instanceof ProjectComponentIdentifier
+          || c instanceof ModuleComponentIdentifier && groupUrls.get().containsKey(((ModuleComponentIdentifier) c).getGroup()));
         view.setLenient(true); // ignore artifacts with no javadoc elements variant
       }).getArtifacts());
 
@@ -188,30 +249,48 @@ public class CrossdocPlugin implements ProjectPlugin {
       t.getLinkableArtifactFiles().from(jdLinks.map(ArtifactCollection::getArtifactFiles));
       t.getLinkableArtifacts().set(jdLinks.flatMap(ArtifactCollection::getResolvedArtifacts));
       t.getUrlProvider().set(extension.projectDocumentationUrlProvider());
+      t.getUrlService().set(urlService);
+      t.usesService(urlService);
+      t.getGroupDocumentationUrls().set(groupUrls);
       final Provider<RegularFile> argsDest = project.getLayout().getBuildDirectory().file("tmp/" + t.getName() + "-args.txt");
       t.getOutputFile().set(argsDest);
+      t.getElementListDirectory().set(project.getLayout().getBuildDirectory().dir("tmp/" + t.getName() + "-element-lists"));
     });
 
     // Hook that into the Javadoc task
     final Provider<RegularFile> linksOutput = generateLinks.flatMap(t -> t.getOutputFile());
+    final Provider<Directory> elementLists = generateLinks.flatMap(t -> t.getElementListDirectory());
     project.getTasks().matching(t -> t.getName().equals(JavaPlugin.JAVADOC_TASK_NAME) && t instanceof Javadoc).configureEach(t -> {
       t.getInputs().file(linksOutput)
-        .withPropertyName("crossDocOfflineLinks");
+        .withPropertyName("crossDocOfflineLinks")
+        .withPathSensitivity(PathSensitivity.NONE);
+      t.getInputs().dir(elementLists)
+        .withPropertyName("crossDocElementLists")
+        .withPathSensitivity(PathSensitivity.RELATIVE);
 
       t.doFirst(new Action<Task>() {
         @Override
         public void execute(final @NotNull Task arg0) {
-          ((Javadoc) arg0).getOptions().optionFiles(linksOutput.get().getAsFile());
+          // links are only resolved to absolute paths once we know where this build is
+          final File resolvedLinks = new File(arg0.getTemporaryDir(), "offline-links.txt");
+          try {
+            GenerateOfflineLinks.resolveArgumentFile(linksOutput.get().getAsFile(), elementLists.get().getAsFile(), resolvedLinks);
+          } catch (final IOException ex) {
+            throw new GradleException("Failed to resolve offline javadoc links", ex);
+          }
+          ((Javadoc) arg0).getOptions().optionFiles(resolvedLinks);
         }
       });
     });
   }
 
-  private void registerCopyTask(final Project project, final CrossdocExtension extension) {
+  private void registerCopyTask(final Project project, final CrossdocExtension extension, final Provider<ProjectDocumentationUrlService> urlService) {
     project.getTasks().register(COPY_JAVADOC_TASK_NAME, CopyJavadoc.class, t -> {
       t.getProjectName().set(project.provider(() -> project.getName()));
       t.getProjectPath().set(project.provider(() -> project.getPath()));
       t.getDocumentationUrlProvider().set(extension.projectDocumentationUrlProvider());
+      t.getUrlService().set(urlService);
+      t.usesService(urlService);
 
       // todo: sensitive to tasks being created eagerly
       t.getJavadocFiles().from(project.getTasks().named(JavaPlugin.JAVADOC_TASK_NAME));
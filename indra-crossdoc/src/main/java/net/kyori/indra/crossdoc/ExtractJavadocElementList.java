@@ -0,0 +1,98 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.crossdoc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.gradle.api.artifacts.transform.CacheableTransform;
+import org.gradle.api.artifacts.transform.InputArtifact;
+import org.gradle.api.artifacts.transform.TransformAction;
+import org.gradle.api.artifacts.transform.TransformOutputs;
+import org.gradle.api.artifacts.transform.TransformParameters;
+import org.gradle.api.file.FileSystemLocation;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+
+/**
+ * Read the package index out of a javadoc archive, producing a directory that can be passed to {@code -linkoffline}.
+ *
+ * <p>Only the {@code element-list} and {@code package-list} files are read from the archive, so the rest
+ * of the javadoc never has to be extracted.</p>
+ *
+ * @since 4.0.0
+ */
+@CacheableTransform
+public abstract class ExtractJavadocElementList implements TransformAction<TransformParameters.None> {
+  /**
+   * The artifact type produced by this transform.
+   *
+   * @since 4.0.0
+   */
+  public static final String ARTIFACT_TYPE = "javadoc-element-list";
+
+  /**
+   * The file listing the modules and packages documented by javadoc for JDK 10 and newer.
+   *
+   * @since 4.0.0
+   */
+  public static final String ELEMENT_LIST = "element-list";
+
+  /**
+   * The file listing the packages documented by javadoc for JDK 9 and older.
+   *
+   * @since 4.0.0
+   */
+  public static final String PACKAGE_LIST = "package-list";
+
+  @InputArtifact
+  @PathSensitive(PathSensitivity.NAME_ONLY)
+  public abstract Provider<FileSystemLocation> getInputArtifact();
+
+  @Override
+  public void transform(final TransformOutputs outputs) {
+    final File archive = this.getInputArtifact().get().getAsFile();
+    final String name = archive.getName();
+    final File destination = outputs.dir((name.endsWith(".jar") ? name.substring(0, name.length() - 4) : name) + "-" + ARTIFACT_TYPE);
+    try (final ZipFile zip = new ZipFile(archive)) {
+      Files.createDirectories(destination.toPath());
+      for (final String listName : new String[] {ELEMENT_LIST, PACKAGE_LIST}) {
+        final ZipEntry entry = zip.getEntry(listName);
+        if (entry == null) continue;
+
+        try (final InputStream is = zip.getInputStream(entry)) {
+          Files.copy(is, new File(destination, listName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+    } catch (final IOException ex) {
+      throw new UncheckedIOException("Failed to read javadoc package index from " + archive, ex);
+    }
+  }
+}
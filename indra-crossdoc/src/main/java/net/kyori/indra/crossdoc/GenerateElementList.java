@@ -0,0 +1,139 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.crossdoc;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.SkipWhenEmpty;
+import org.gradle.api.tasks.TaskAction;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Generate the {@code element-list} javadoc will produce for a set of sources, without running javadoc.
+ *
+ * <p>This is all another project's javadoc needs to link against this project, so it can be built
+ * before, or alongside, this project's own javadoc.</p>
+ *
+ * @since 4.0.0
+ */
+@CacheableTask
+public abstract class GenerateElementList extends DefaultTask {
+  private static final String JAVA_EXTENSION = ".java";
+  private static final String PACKAGE_INFO = "package-info.java";
+  private static final String MODULE_INFO = "module-info.java";
+  private static final String MODULE_PREFIX = "module:";
+  private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/|//[^\\n]*", Pattern.DOTALL);
+  private static final Pattern MODULE_NAME = Pattern.compile("\\bmodule\\s+([\\w.]+)\\s*\\{");
+  private static final Pattern UNQUALIFIED_EXPORT = Pattern.compile("\\bexports\\s+([\\w.]+)\\s*;");
+
+  /**
+   * The sources that will be documented, as passed to the javadoc task.
+   *
+   * @return the source files
+   * @since 4.0.0
+   */
+  @InputFiles
+  @SkipWhenEmpty
+  @IgnoreEmptyDirectories
+  @PathSensitive(PathSensitivity.RELATIVE)
+  public abstract ConfigurableFileCollection getSources();
+
+  /**
+   * The directory to write the {@code element-list} file into.
+   *
+   * @return the output directory
+   * @since 4.0.0
+   */
+  @OutputDirectory
+  public abstract DirectoryProperty getOutputDirectory();
+
+  @TaskAction
+  public void generate() throws IOException {
+    final Set<String> packages = new TreeSet<>();
+    final File[] moduleInfo = new File[1];
+    this.getSources().getAsFileTree().visit(details -> {
+      if (details.isDirectory()) return;
+
+      final String name = details.getName();
+      if (name.equals(MODULE_INFO)) {
+        moduleInfo[0] = details.getFile();
+      } else if (name.endsWith(JAVA_EXTENSION) && !name.equals(PACKAGE_INFO)) {
+        final String pkg = packageName(details);
+        if (!pkg.isEmpty()) packages.add(pkg); // the unnamed package cannot be linked to
+      }
+    });
+
+    @Nullable String module = null;
+    if (moduleInfo[0] != null) {
+      final String descriptor = COMMENT.matcher(new String(Files.readAllBytes(moduleInfo[0].toPath()), StandardCharsets.UTF_8)).replaceAll(" ");
+      final Matcher moduleName = MODULE_NAME.matcher(descriptor);
+      if (moduleName.find()) {
+        module = moduleName.group(1);
+        // javadoc only documents exported packages of a module by default
+        final Set<String> exported = new TreeSet<>();
+        final Matcher exports = UNQUALIFIED_EXPORT.matcher(descriptor);
+        while (exports.find()) {
+          exported.add(exports.group(1));
+        }
+        packages.retainAll(exported);
+      }
+    }
+
+    final File outputDir = this.getOutputDirectory().get().getAsFile();
+    Files.createDirectories(outputDir.toPath());
+    try (final BufferedWriter writer = Files.newBufferedWriter(new File(outputDir, ExtractJavadocElementList.ELEMENT_LIST).toPath(), StandardCharsets.UTF_8)) {
+      if (module != null) {
+        writer.write(MODULE_PREFIX + module);
+        writer.newLine();
+      }
+      for (final String pkg : packages) {
+        writer.write(pkg);
+        writer.newLine();
+      }
+    }
+  }
+
+  private static String packageName(final FileVisitDetails details) {
+    final String[] segments = details.getRelativePath().getSegments();
+    return String.join(".", Arrays.asList(segments).subList(0, segments.length - 1));
+  }
+}
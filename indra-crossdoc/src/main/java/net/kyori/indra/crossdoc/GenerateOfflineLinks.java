@@ -23,32 +23,61 @@
  */
 package net.kyori.indra.crossdoc;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.inject.Inject;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.artifacts.component.ProjectComponentIdentifier;
 import org.gradle.api.artifacts.result.ResolvedArtifactResult;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.attributes.AttributeContainer;
 import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
 import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.SetProperty;
+import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFiles;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.javadoc.Javadoc;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Generate an options file containing {@code -linkoffline} info for passing into {@link Javadoc} tasks.
  *
+ * <p>The element lists of linked projects are copied into the {@link #getElementListDirectory() element list directory},
+ * and the options file refers to them by paths relative to that directory, so that the outputs of this task can be
+ * shared through the build cache between checkouts in different locations. Use
+ * {@link #resolveArgumentFile(File, File, File)} to produce an options file that can be passed to javadoc.</p>
+ *
+ * <p>Projects, including those in included builds, are linked at the {@link #getLinkBaseUrl() link base URL}.
+ * External modules are linked if their group has a {@link #getGroupDocumentationUrls() documentation URL}.</p>
+ *
  * @since 2.1.0
  */
+@CacheableTask
 public abstract class GenerateOfflineLinks extends DefaultTask {
   private static final String LINK_OFFLINE_OPTION = "-linkoffline";
 
@@ -71,8 +100,30 @@ public abstract class GenerateOfflineLinks extends DefaultTask {
   public abstract Property<ProjectDocumentationUrlProvider> getUrlProvider();
 
   @InputFiles
+  @PathSensitive(PathSensitivity.RELATIVE)
   protected abstract ConfigurableFileCollection getLinkableArtifactFiles();
 
+  @Input
+  protected Provider<List<String>> getLinkableComponents() {
+    // the component identity of each artifact determines its link URL, but is not captured by the artifact files
+    return this.getLinkableArtifacts().map(artifacts -> artifacts.stream()
+      .map(it -> componentKey(it.getId().getComponentIdentifier()))
+      .sorted()
+      .collect(Collectors.toList()));
+  }
+
+  /**
+   * URLs of the documentation for external modules, by module group.
+   *
+   * <p>URLs may contain the placeholders {@code {group}}, {@code {name}} and {@code {version}}, which are replaced
+   * with the coordinates of each module. Modules in groups without a URL are not linked.</p>
+   *
+   * @return the group documentation URLs
+   * @since 4.0.0
+   */
+  @Input
+  public abstract MapProperty<String, String> getGroupDocumentationUrls();
+
   /**
    * A collection of artifacts on the compile classpath, to generate links to.
    *
@@ -82,6 +133,17 @@ public abstract class GenerateOfflineLinks extends DefaultTask {
   @Internal
   public abstract SetProperty<ResolvedArtifactResult> getLinkableArtifacts();
 
+  /**
+   * A service caching computed project URLs across the build.
+   *
+   * <p>URLs are computed directly when no service is set.</p>
+   *
+   * @return the URL service property
+   * @since 4.0.0
+   */
+  @Internal
+  public abstract Property<ProjectDocumentationUrlService> getUrlService();
+
   /**
    * The output file that the generated arguments for the {@code javadoc} tool will be written to.
    *
@@ -91,34 +153,146 @@ public abstract class GenerateOfflineLinks extends DefaultTask {
   @OutputFile
   public abstract RegularFileProperty getOutputFile();
 
+  /**
+   * The directory that element lists of linked projects will be copied into.
+   *
+   * <p>Paths to element lists in the {@link #getOutputFile() output file} are relative to this directory.</p>
+   *
+   * @return the element list directory
+   * @since 4.0.0
+   */
+  @OutputDirectory
+  public abstract DirectoryProperty getElementListDirectory();
+
+  @Inject
+  protected abstract FileSystemOperations getFileSystemOperations();
+
   @TaskAction
   public void generateArgumentFile() throws IOException {
     final File outputFile = this.getOutputFile().get().getAsFile();
+    final Path elementLists = this.getElementListDirectory().get().getAsFile().toPath();
     outputFile.getParentFile().mkdirs();
-    try (final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8))) {
-      for (final ResolvedArtifactResult it : this.getLinkableArtifacts().get()) {
-        final File file = it.getFile();
-        final ProjectComponentIdentifier identifier = (ProjectComponentIdentifier) it.getId().getComponentIdentifier();
-        final String projectName = identifier.getProjectName();
-        if (!file.isDirectory()) {
-          this.getLogger().info("Failed to link to Javadoc in {} (for {}) because it was not a directory", file, projectName);
+    this.getFileSystemOperations().delete(spec -> spec.delete(elementLists)); // clear out lists from earlier runs
+    Files.createDirectories(elementLists);
+
+    String linkRoot = this.getLinkBaseUrl().get();
+    if (!linkRoot.endsWith("/")) {
+      linkRoot += "/";
+    }
+    final ProjectDocumentationUrlProvider urlProvider = this.getUrlProvider().get();
+    final Map<String, String> groupUrls = this.getGroupDocumentationUrls().get();
+
+    // element list path -> link URL
+    final Map<String, String> links = new LinkedHashMap<>();
+    for (final ResolvedArtifactResult it : this.getLinkableArtifacts().get()) {
+      final File file = it.getFile();
+      final ComponentIdentifier component = it.getId().getComponentIdentifier();
+      final String url;
+      if (component instanceof ProjectComponentIdentifier) {
+        final ProjectComponentIdentifier identifier = (ProjectComponentIdentifier) component;
+        if (!isCrossdocVariant(it.getVariant().getAttributes())) {
+          // projects without crossdoc applied have no known documentation URL
+          this.getLogger().info("Failed to link to Javadoc in {} (for {}) because it was not published by a project with crossdoc applied", file, component.getDisplayName());
+          continue;
+        }
+        url = linkRoot + ProjectDocumentationUrlService.resolve(this.getUrlService(), urlProvider, identifier.getProjectName(), identifier.getProjectPath());
+      } else if (component instanceof ModuleComponentIdentifier) {
+        final ModuleComponentIdentifier identifier = (ModuleComponentIdentifier) component;
+        final @Nullable String groupUrl = groupUrls.get(identifier.getGroup());
+        if (groupUrl == null) {
+          this.getLogger().info("Failed to link to Javadoc in {} (for {}) because no documentation URL was configured for its group", file, component.getDisplayName());
           continue;
         }
+        url = groupUrl.replace("{group}", identifier.getGroup())
+          .replace("{name}", identifier.getModule())
+          .replace("{version}", identifier.getVersion());
+      } else {
+        continue;
+      }
+      if (!file.isDirectory()) {
+        this.getLogger().info("Failed to link to Javadoc in {} (for {}) because it was not a directory", file, component.getDisplayName());
+        continue;
+      }
 
-        String linkRoot = this.getLinkBaseUrl().get();
-        if (!linkRoot.endsWith("/")) {
-          linkRoot += "/";
+      // copy the lists, so the options file only has to reference paths within our own outputs
+      final String listPath = componentKey(component).replaceAll("[^A-Za-z0-9.\\-]", "_");
+      final Path listDir = Files.createDirectories(elementLists.resolve(listPath));
+      boolean hasList = false;
+      for (final String list : new String[] {ExtractJavadocElementList.ELEMENT_LIST, ExtractJavadocElementList.PACKAGE_LIST}) {
+        final File source = new File(file, list);
+        if (source.isFile()) {
+          Files.copy(source.toPath(), listDir.resolve(list), StandardCopyOption.REPLACE_EXISTING);
+          hasList = true;
         }
+      }
+      if (!hasList) {
+        this.getLogger().info("Failed to link to Javadoc in {} (for {}) because it had no element-list or package-list", file, component.getDisplayName());
+        Files.delete(listDir);
+        continue;
+      }
+      links.put(listPath, url);
+    }
 
+    try (final BufferedWriter writer = Files.newBufferedWriter(outputFile.toPath(), StandardCharsets.UTF_8)) {
+      for (final Map.Entry<String, String> link : links.entrySet()) {
         // Write out the option
         writer.append(LINK_OFFLINE_OPTION)
           .append(' ')
-          .append(linkRoot)
-          .append(this.getUrlProvider().get().createUrl(projectName, identifier.getProjectPath()))
+          .append(link.getValue())
           .append(' ')
-          .append(file.getAbsolutePath());
+          .append(link.getKey());
+        writer.newLine();
+      }
+    }
+  }
+
+  private static String componentKey(final ComponentIdentifier component) {
+    if (component instanceof ProjectComponentIdentifier) {
+      return BuildTreePaths.qualifiedPath((ProjectComponentIdentifier) component);
+    } else if (component instanceof ModuleComponentIdentifier) {
+      final ModuleComponentIdentifier module = (ModuleComponentIdentifier) component;
+      return module.getGroup() + ':' + module.getModule() + ':' + module.getVersion();
+    } else {
+      return component.getDisplayName();
+    }
+  }
+
+  /**
+   * Resolve the element list paths in an options file produced by this task, for passing to javadoc.
+   *
+   * @param argumentFile the {@link #getOutputFile() options file} produced by this task
+   * @param elementListDirectory the {@link #getElementListDirectory() element list directory} of this task
+   * @param destination the file to write options with absolute paths to
+   * @throws IOException if unable to read or write the options
+   * @since 4.0.0
+   */
+  public static void resolveArgumentFile(final File argumentFile, final File elementListDirectory, final File destination) throws IOException {
+    try (
+      final BufferedReader reader = Files.newBufferedReader(argumentFile.toPath(), StandardCharsets.UTF_8);
+      final BufferedWriter writer = Files.newBufferedWriter(destination.toPath(), StandardCharsets.UTF_8)
+    ) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        final int pathStart = line.lastIndexOf(' ');
+        if (!line.startsWith(LINK_OFFLINE_OPTION) || pathStart == -1) continue;
+
+        final String location = new File(elementListDirectory, line.substring(pathStart + 1)).getAbsolutePath();
+        writer.append(line, 0, pathStart + 1)
+          .append('\'')
+          .append(location.replace("\\", "\\\\"))
+          .append('\'');
         writer.newLine();
       }
     }
   }
+
+  private static boolean isCrossdocVariant(final AttributeContainer attributes) {
+    // after resolution, the attribute may have been desugared to a string
+    for (final Attribute<?> attribute : attributes.keySet()) {
+      if (attribute.getName().equals(JavadocPackaging.JAVADOC_PACKAGING_ATTRIBUTE.getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
 }
@@ -52,4 +52,13 @@ public interface JavadocPackaging extends Named {
    * @since 2.1.0
    */
   String DIRECTORY = "directory";
+
+  /**
+   * Only the {@code element-list} index of the packages that are documented, in a directory.
+   *
+   * <p>This is all that is needed to link to a project's javadoc, and can be produced without running javadoc.</p>
+   *
+   * @since 4.0.0
+   */
+  String ELEMENT_LIST = "element-list";
 }
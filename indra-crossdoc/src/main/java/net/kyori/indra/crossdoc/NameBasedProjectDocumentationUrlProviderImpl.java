@@ -23,6 +23,7 @@
  */
 package net.kyori.indra.crossdoc;
 
+import java.util.Arrays;
 import java.util.Locale;
 import net.kyori.mammoth.Properties;
 import org.jetbrains.annotations.NotNull;
@@ -49,6 +50,18 @@ abstract class NameBasedProjectDocumentationUrlProviderImpl implements ProjectDo
     }
   }
 
+  /**
+   * A value identifying the URLs this provider creates, for {@link ProjectDocumentationUrlService} caching.
+   */
+  Object cacheKey() {
+    return Arrays.asList(
+      NameBasedProjectDocumentationUrlProviderImpl.class,
+      this.getVersion().getOrNull(),
+      this.getProjectNamePrefix().getOrNull(),
+      this.getLowercaseProjectName().get()
+    );
+  }
+
   private String normalizeName(final String name) {
     if (Properties.finalized(this.getLowercaseProjectName()).get()) {
       return name.toLowerCase(Locale.ROOT);
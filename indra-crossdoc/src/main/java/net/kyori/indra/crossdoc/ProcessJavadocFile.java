@@ -0,0 +1,264 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.crossdoc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Write one javadoc file to its destination, optionally minified and with a gzip-compressed sibling.
+ *
+ * <p>Minification is conservative: HTML only has comments removed outside of tags and {@code pre}, {@code textarea},
+ * {@code script} and {@code style} elements, and CSS has comments removed and whitespace collapsed outside of strings.
+ * Whitespace in HTML can be significant wherever a stylesheet preserves it, and JavaScript cannot be changed safely
+ * without parsing strings and template literals, so both are left as they are for compression to handle.</p>
+ */
+abstract class ProcessJavadocFile implements WorkAction<ProcessJavadocFile.Parameters> {
+  static final String GZIP_EXTENSION = ".gz";
+  // every byte maps to one char, so documents in any ASCII-compatible encoding pass through unchanged
+  private static final Charset TRANSPARENT = StandardCharsets.ISO_8859_1;
+  private static final String[] RAW_ELEMENTS = {"pre", "textarea", "script", "style"};
+
+  interface Parameters extends WorkParameters {
+    RegularFileProperty getSource();
+
+    RegularFileProperty getTarget();
+
+    Property<Boolean> getMinify();
+
+    Property<Boolean> getCompress();
+  }
+
+  enum Type {
+    HTML,
+    CSS,
+    JS;
+  }
+
+  static @Nullable Type type(final Path file) {
+    final String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+    if (name.endsWith(".html") || name.endsWith(".htm")) {
+      return Type.HTML;
+    } else if (name.endsWith(".css")) {
+      return Type.CSS;
+    } else if (name.endsWith(".js")) {
+      return Type.JS;
+    } else {
+      return null;
+    }
+  }
+
+  static Path compressedSibling(final Path file) {
+    return file.resolveSibling(file.getFileName() + GZIP_EXTENSION);
+  }
+
+  @Override
+  public void execute() {
+    final Parameters params = this.getParameters();
+    final Path source = params.getSource().get().getAsFile().toPath();
+    final Path target = params.getTarget().get().getAsFile().toPath();
+    try {
+      byte[] contents = Files.readAllBytes(source);
+      final @Nullable Type type = type(source);
+      if (params.getMinify().get() && type != null) {
+        contents = minify(type, new String(contents, TRANSPARENT)).getBytes(TRANSPARENT);
+      }
+
+      // the target may be a link to an earlier source, which must not be written through
+      Files.createDirectories(target.getParent());
+      Files.deleteIfExists(target);
+      Files.write(target, contents);
+
+      final Path compressed = compressedSibling(target);
+      Files.deleteIfExists(compressed);
+      if (params.getCompress().get()) {
+        try (final OutputStream out = new BestGZIPOutputStream(Files.newOutputStream(compressed))) {
+          out.write(contents);
+        }
+      }
+    } catch (final IOException ex) {
+      throw new UncheckedIOException("Failed to process javadoc file " + source, ex);
+    }
+  }
+
+  static String minify(final Type type, final String text) {
+    switch (type) {
+      case HTML: return minifyHtml(text);
+      case CSS: return minifyCss(text);
+      case JS: return text;
+      default: throw new IllegalArgumentException("Unknown type " + type);
+    }
+  }
+
+  static String minifyHtml(final String text) {
+    final StringBuilder out = new StringBuilder(text.length());
+    final int length = text.length();
+    int i = 0;
+    while (i < length) {
+      final int open = text.indexOf('<', i);
+      if (open == -1) {
+        out.append(text, i, length);
+        break;
+      }
+      out.append(text, i, open);
+
+      if (text.startsWith("<!--", open) && !text.startsWith("<!--[if", open)) {
+        final int end = text.indexOf("-->", open + 4);
+        if (end == -1) {
+          out.append(text, open, length);
+          break;
+        }
+        i = end + 3;
+        continue;
+      }
+
+      int end = endOfTag(text, open);
+      final @Nullable String raw = rawElementAt(text, open);
+      if (raw != null) {
+        final int close = indexOfIgnoreCase(text, "</" + raw, end);
+        end = close == -1 ? length : close;
+      }
+      out.append(text, open, end);
+      i = end;
+    }
+    return out.toString();
+  }
+
+  static String minifyCss(final String text) {
+    final StringBuilder out = new StringBuilder(text.length());
+    final int length = text.length();
+    int i = 0;
+    while (i < length) {
+      final char c = text.charAt(i);
+      if (c == '"' || c == '\'') {
+        final int end = endOfString(text, i);
+        out.append(text, i, end);
+        i = end;
+      } else if (text.startsWith("/*", i)) {
+        final int end = text.indexOf("*/", i + 2);
+        i = end == -1 ? length : end + 2;
+      } else if (Character.isWhitespace(c)) {
+        final int end = collapseWhitespace(text, i, new StringBuilder());
+        // whitespace is only significant between other tokens
+        if (out.length() > 0 && end < length && !isCssPunctuation(out.charAt(out.length() - 1)) && !isCssPunctuation(text.charAt(end))) {
+          out.append(' ');
+        }
+        i = end;
+      } else {
+        out.append(c);
+        i++;
+      }
+    }
+    return out.toString();
+  }
+
+  private static int collapseWhitespace(final String text, final int start, final StringBuilder out) {
+    boolean newline = false;
+    int i = start;
+    while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+      if (text.charAt(i) == '\n') newline = true;
+      i++;
+    }
+    out.append(newline ? '\n' : ' ');
+    return i;
+  }
+
+  // the index after the '>' ending a tag, skipping over any '>' within quoted attribute values
+  private static int endOfTag(final String text, final int start) {
+    int i = start + 1;
+    while (i < text.length()) {
+      final char c = text.charAt(i);
+      if (c == '>') {
+        return i + 1;
+      } else if (c == '"' || c == '\'') {
+        final int close = text.indexOf(c, i + 1);
+        if (close == -1) break;
+        i = close + 1;
+      } else {
+        i++;
+      }
+    }
+    return text.length();
+  }
+
+  private static @Nullable String rawElementAt(final String text, final int start) {
+    for (final String element : RAW_ELEMENTS) {
+      final int nameEnd = start + 1 + element.length();
+      if (text.regionMatches(true, start + 1, element, 0, element.length()) && nameEnd < text.length()) {
+        final char next = text.charAt(nameEnd);
+        if (next == '>' || next == '/' || Character.isWhitespace(next)) {
+          return element;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static int indexOfIgnoreCase(final String text, final String needle, final int from) {
+    for (int i = from; i <= text.length() - needle.length(); i++) {
+      if (text.regionMatches(true, i, needle, 0, needle.length())) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int endOfString(final String text, final int start) {
+    final char quote = text.charAt(start);
+    int i = start + 1;
+    while (i < text.length()) {
+      final char c = text.charAt(i++);
+      if (c == '\\') {
+        i++;
+      } else if (c == quote) {
+        break;
+      }
+    }
+    return Math.min(i, text.length());
+  }
+
+  private static boolean isCssPunctuation(final char c) {
+    return c == '{' || c == '}' || c == ';' || c == ',';
+  }
+
+  static final class BestGZIPOutputStream extends GZIPOutputStream {
+    BestGZIPOutputStream(final OutputStream out) throws IOException {
+      super(out, 8192);
+      this.def.setLevel(Deflater.BEST_COMPRESSION);
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.crossdoc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A build-wide cache of the documentation URLs computed by {@link ProjectDocumentationUrlProvider}s.
+ *
+ * <p>Each project's URL is only computed once per build for each distinct provider configuration, no matter how
+ * many tasks need it. Providers created through the {@link CrossdocExtension} are cached by their configured values,
+ * while other providers are cached per instance.</p>
+ *
+ * @since 4.0.0
+ */
+public abstract class ProjectDocumentationUrlService implements BuildService<BuildServiceParameters.None> {
+  /**
+   * The name this service is registered under.
+   *
+   * @since 4.0.0
+   */
+  public static final String SERVICE_NAME = "indraCrossdocUrls";
+
+  private final Map<Key, String> urls = new ConcurrentHashMap<>();
+
+  /**
+   * Resolve a project's documentation URL using an optional service.
+   *
+   * @param service the service, if available
+   * @param provider the provider computing URLs
+   * @param projectName the project name
+   * @param projectPath the project path
+   * @return the project URL, relative to the documentation root
+   * @since 4.0.0
+   */
+  public static @NotNull String resolve(
+    final @NotNull Property<ProjectDocumentationUrlService> service,
+    final @NotNull ProjectDocumentationUrlProvider provider,
+    final @NotNull String projectName,
+    final @NotNull String projectPath
+  ) {
+    final @Nullable ProjectDocumentationUrlService actual = service.getOrNull();
+    return actual == null ? provider.createUrl(projectName, projectPath) : actual.url(provider, projectName, projectPath);
+  }
+
+  /**
+   * Resolve the documentation URLs of many projects using an optional service.
+   *
+   * @param service the service, if available
+   * @param provider the provider computing URLs
+   * @param projects a map of project path to project name
+   * @return a map of project path to project URL, in the iteration order of {@code projects}
+   * @since 4.0.0
+   */
+  public static @NotNull Map<String, String> resolveAll(
+    final @NotNull Property<ProjectDocumentationUrlService> service,
+    final @NotNull ProjectDocumentationUrlProvider provider,
+    final @NotNull Map<String, String> projects
+  ) {
+    final @Nullable ProjectDocumentationUrlService actual = service.getOrNull();
+    if (actual != null) return actual.urls(provider, projects);
+
+    final Map<String, String> result = new LinkedHashMap<>(projects.size() * 4 / 3 + 1);
+    for (final Map.Entry<String, String> project : projects.entrySet()) {
+      result.put(project.getKey(), provider.createUrl(project.getValue(), project.getKey()));
+    }
+    return result;
+  }
+
+  /**
+   * Get the documentation URL for a single project.
+   *
+   * @param provider the provider computing URLs
+   * @param projectName the project name
+   * @param projectPath the project path
+   * @return the project URL, relative to the documentation root
+   * @since 4.0.0
+   */
+  public @NotNull String url(final @NotNull ProjectDocumentationUrlProvider provider, final @NotNull String projectName, final @NotNull String projectPath) {
+    return this.urls.computeIfAbsent(new Key(cacheKey(provider), projectName, projectPath), key -> provider.createUrl(projectName, projectPath));
+  }
+
+  /**
+   * Get the documentation URLs for many projects at once.
+   *
+   * @param provider the provider computing URLs
+   * @param projects a map of project path to project name
+   * @return a map of project path to project URL, in the iteration order of {@code projects}
+   * @since 4.0.0
+   */
+  public @NotNull Map<String, String> urls(final @NotNull ProjectDocumentationUrlProvider provider, final @NotNull Map<String, String> projects) {
+    final Object providerKey = cacheKey(provider);
+    final Map<String, String> result = new LinkedHashMap<>(projects.size() * 4 / 3 + 1);
+    for (final Map.Entry<String, String> project : projects.entrySet()) {
+      result.put(
+        project.getKey(),
+        this.urls.computeIfAbsent(new Key(providerKey, project.getValue(), project.getKey()), key -> provider.createUrl(project.getValue(), project.getKey()))
+      );
+    }
+    return result;
+  }
+
+  private static Object cacheKey(final ProjectDocumentationUrlProvider provider) {
+    if (provider instanceof NameBasedProjectDocumentationUrlProviderImpl) {
+      return ((NameBasedProjectDocumentationUrlProviderImpl) provider).cacheKey();
+    }
+    return provider;
+  }
+
+  static final class Key {
+    private final Object provider;
+    private final String projectName;
+    private final String projectPath;
+    private final int hash;
+
+    Key(final Object provider, final String projectName, final String projectPath) {
+      this.provider = provider;
+      this.projectName = projectName;
+      this.projectPath = projectPath;
+      this.hash = Objects.hash(provider, projectName, projectPath);
+    }
+
+    @Override
+    public boolean equals(final @Nullable Object other) {
+      if (this == other) return true;
+      if (!(other instanceof Key)) return false;
+      final Key that = (Key) other;
+      return this.hash == that.hash
+        && this.provider.equals(that.provider)
+        && this.projectName.equals(that.projectName)
+        && this.projectPath.equals(that.projectPath);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+  }
+}
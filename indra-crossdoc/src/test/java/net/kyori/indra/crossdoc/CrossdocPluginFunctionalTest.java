@@ -23,10 +23,22 @@
  */
 package net.kyori.indra.crossdoc;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import net.kyori.indra.test.FunctionalTestDisplayNameGenerator;
 import net.kyori.indra.test.IndraConfigCacheFunctionalTest;
 import net.kyori.indra.test.SettingsFactory;
@@ -35,8 +47,10 @@ import org.gradle.testkit.runner.BuildResult;
 import org.gradle.testkit.runner.TaskOutcome;
 import org.junit.jupiter.api.DisplayNameGeneration;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DisplayNameGeneration(FunctionalTestDisplayNameGenerator.class)
@@ -52,15 +66,224 @@ class CrossdocPluginFunctionalTest {
     ctx.copyInput("consumer/src/main/java/consumer/ValueHandler.java");
     final BuildResult result = ctx.build(":consumer:javadoc", "--info");
     assertEquals(TaskOutcome.SUCCESS, result.task(":consumer:generateOfflineLinks").getOutcome());
+    // only the producer's package index is needed, not its whole javadoc
+    assertEquals(TaskOutcome.SUCCESS, result.task(":producer:generateElementList").getOutcome());
+    assertNull(result.task(":producer:javadoc"));
 
     final Path offlineLinksFile = ctx.outputDirectory().resolve("consumer").resolve(OFFLINE_LINKS_OUTPUT_LOCATION);
     assertTrue(Files.exists(offlineLinksFile));
-    assertEquals(1, Files.readAllLines(offlineLinksFile, StandardCharsets.UTF_8).size());
+    final List<String> offlineLinks = Files.readAllLines(offlineLinksFile, StandardCharsets.UTF_8);
+    assertEquals(1, offlineLinks.size());
+    // relocatable, with element lists referenced relative to the task output
+    assertTrue(offlineLinks.get(0).startsWith("-linkoffline https://jd.example.com/producer"), offlineLinks.get(0));
+    assertTrue(offlineLinks.get(0).endsWith(" _producer"), offlineLinks.get(0));
+    assertTrue(Files.isRegularFile(ctx.outputDirectory().resolve("consumer/build/tmp/generateOfflineLinks-element-lists/_producer/element-list")));
+    assertEquals(
+      Collections.singletonList("producer"),
+      Files.readAllLines(ctx.outputDirectory().resolve("producer/build/tmp/generateElementList/element-list"), StandardCharsets.UTF_8)
+    );
 
     assertFalse(result.getOutput().contains("Failed to link to Javadoc"), () -> "Javadoc linking failures detected, output:\n" + result.getOutput());
   }
 
-  // TODO: test copyJavadoc?
+  @IndraConfigCacheFunctionalTest
+  void testIncludedBuild(final TestContext ctx) throws IOException {
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("settings.gradle");
+    ctx.copyInput("producer/build.gradle");
+    ctx.copyInput("producer/settings.gradle");
+    ctx.copyInput("producer/src/main/java/producer/Values.java");
+    ctx.copyInput("consumer/build.gradle");
+    ctx.copyInput("consumer/src/main/java/consumer/ValueHandler.java");
+    final BuildResult result = ctx.build(":consumer:javadoc", "--info");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":consumer:generateOfflineLinks").getOutcome());
+
+    final Path offlineLinksFile = ctx.outputDirectory().resolve("consumer").resolve(OFFLINE_LINKS_OUTPUT_LOCATION);
+    assertEquals(
+      Collections.singletonList("-linkoffline https://jd.example.com/producer/1.0.0 _producer"),
+      Files.readAllLines(offlineLinksFile, StandardCharsets.UTF_8)
+    );
+    assertFalse(result.getOutput().contains("Failed to link to Javadoc"), () -> "Javadoc linking failures detected, output:\n" + result.getOutput());
+  }
+
+  @IndraConfigCacheFunctionalTest
+  void testJavadocArchive(final TestContext ctx) throws IOException {
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("settings.gradle");
+    ctx.copyInput("src/main/java/consumer/ValueHandler.java");
+    final Map<String, String> javadoc = new LinkedHashMap<>();
+    javadoc.put("index.html", "<html></html>");
+    javadoc.put("lib/Lib.html", "<html></html>");
+    javadoc.put("package-list", "lib\n");
+    publishModule(ctx.outputDirectory().resolve("repo"), "com.example", "lib", "1.2.3", javadoc);
+
+    final BuildResult result = ctx.build("javadoc", "generateMetadataFileForMavenPublication", "--info");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateOfflineLinks").getOutcome());
+    assertEquals(
+      Collections.singletonList("-linkoffline https://docs.example.com/lib/ com.example_lib_1.2.3"),
+      Files.readAllLines(ctx.outputDirectory().resolve(OFFLINE_LINKS_OUTPUT_LOCATION), StandardCharsets.UTF_8)
+    );
+    // only the package index is read out of the javadoc jar
+    final Path elementLists = ctx.outputDirectory().resolve("build/tmp/generateOfflineLinks-element-lists/com.example_lib_1.2.3");
+    assertEquals(Collections.singletonList("lib"), Files.readAllLines(elementLists.resolve("package-list"), StandardCharsets.UTF_8));
+    try (final Stream<Path> files = Files.list(elementLists)) {
+      assertEquals(1, files.count());
+    }
+    assertFalse(result.getOutput().contains("Failed to link to Javadoc"), () -> "Javadoc linking failures detected, output:\n" + result.getOutput());
+
+    // the published javadoc variant is unchanged by crossdoc
+    final String metadata = new String(Files.readAllBytes(ctx.outputDirectory().resolve("build/publications/maven/module.json")), StandardCharsets.UTF_8);
+    assertTrue(metadata.contains("\"javadocElements\""), metadata);
+    assertFalse(metadata.contains(JavadocPackaging.JAVADOC_PACKAGING_ATTRIBUTE.getName()), metadata);
+  }
+
+  @IndraConfigCacheFunctionalTest
+  void testExternalModuleJavadoc(final TestContext ctx) throws IOException {
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("settings.gradle");
+    ctx.copyInput("src/main/java/consumer/ValueHandler.java");
+    final Path repo = ctx.outputDirectory().resolve("repo");
+    publishModule(repo, "com.example", "lib", "1.2.3", Collections.singletonMap("element-list", "lib\nlib.util\n"));
+    publishModule(repo, "org.other", "thing", "2.0", Collections.singletonMap("element-list", "thing\n"));
+
+    final BuildResult result = ctx.build("javadoc", "--info");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":generateOfflineLinks").getOutcome());
+
+    // the URL is filled in from the module coordinates, and the element list is referenced relative to the task output
+    assertEquals(
+      Collections.singletonList("-linkoffline https://javadoc.io/doc/com.example/lib/1.2.3/ com.example_lib_1.2.3"),
+      Files.readAllLines(ctx.outputDirectory().resolve(OFFLINE_LINKS_OUTPUT_LOCATION), StandardCharsets.UTF_8)
+    );
+    final Path elementLists = ctx.outputDirectory().resolve("build/tmp/generateOfflineLinks-element-lists");
+    assertEquals(Arrays.asList("lib", "lib.util"), Files.readAllLines(elementLists.resolve("com.example_lib_1.2.3/element-list"), StandardCharsets.UTF_8));
+    assertFalse(Files.exists(elementLists.resolve("org.other_thing_2.0")));
+
+    // javadoc itself receives the absolute location of the element list
+    final List<String> resolved = Files.readAllLines(ctx.outputDirectory().resolve("build/tmp/javadoc/offline-links.txt"), StandardCharsets.UTF_8);
+    assertEquals(1, resolved.size());
+    assertTrue(resolved.get(0).startsWith("-linkoffline https://javadoc.io/doc/com.example/lib/1.2.3/ '"), resolved.get(0));
+    assertTrue(resolved.get(0).replace("\\\\", "/").endsWith("build/tmp/generateOfflineLinks-element-lists/com.example_lib_1.2.3'"), resolved.get(0));
+    assertFalse(result.getOutput().contains("Failed to link to Javadoc"), () -> "Javadoc linking failures detected, output:\n" + result.getOutput());
+  }
+
+  @IndraConfigCacheFunctionalTest
+  void testCopyJavadoc(final TestContext ctx) throws IOException {
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("settings.gradle");
+    ctx.copyInput("producer/src/main/java/producer/Values.java");
+    ctx.copyInput("producer/src/main/java/producer/Extras.java");
+    final BuildResult result = ctx.build(":producer:copyJavadoc", "--output=docs");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":producer:copyJavadoc").getOutcome());
+
+    final Path docs = ctx.outputDirectory().resolve("docs/producer/1.0.0");
+    final Path index = docs.resolve("index.html");
+    assertTrue(Files.isRegularFile(index));
+    assertTrue(Files.isRegularFile(docs.resolve("producer/Values.html")));
+
+    // files not produced by javadoc are removed, while everything else is left in place
+    final Path stale = Files.createDirectories(docs.resolve("stale")).resolve("Stale.html");
+    Files.write(stale, "stale".getBytes(StandardCharsets.UTF_8));
+    final byte[] indexContents = Files.readAllBytes(index);
+    final BuildResult second = ctx.build(":producer:copyJavadoc", "--output=docs");
+    assertEquals(TaskOutcome.SUCCESS, second.task(":producer:copyJavadoc").getOutcome());
+    assertFalse(Files.exists(stale.getParent()));
+    assertArrayEquals(indexContents, Files.readAllBytes(index));
+
+    // a documentation change to one class only copies that class's page
+    final Path values = ctx.outputDirectory().resolve("producer/src/main/java/producer/Values.java");
+    final String source = new String(Files.readAllBytes(values), StandardCharsets.UTF_8);
+    Files.write(values, source.replace("@return known fish", "@return every known fish").getBytes(StandardCharsets.UTF_8));
+    final Map<String, byte[]> before = contents(docs);
+    final BuildResult third = ctx.build(":producer:copyJavadoc", "--output=docs", "--info");
+    assertEquals(TaskOutcome.SUCCESS, third.task(":producer:copyJavadoc").getOutcome());
+    // the incremental path only looks at changed files, so never counts any unchanged ones
+    assertTrue(third.getOutput().contains("Copied 1 files, linked 0 files, processed 0 files, removed 0 files, and left 0 unchanged files"), third::getOutput);
+    final Map<String, byte[]> after = contents(docs);
+    assertEquals(before.keySet(), after.keySet());
+    assertEquals(Collections.singleton("producer/Values.html"), changedFiles(before, after));
+    assertTrue(new String(after.get("producer/Values.html"), StandardCharsets.UTF_8).contains("every known fish"));
+
+    // a removed source removes its page
+    Files.delete(ctx.outputDirectory().resolve("producer/src/main/java/producer/Extras.java"));
+    assertTrue(Files.isRegularFile(docs.resolve("producer/Extras.html")));
+    final BuildResult fourth = ctx.build(":producer:copyJavadoc", "--output=docs", "--info");
+    assertEquals(TaskOutcome.SUCCESS, fourth.task(":producer:copyJavadoc").getOutcome());
+    assertTrue(fourth.getOutput().contains("removed 1 files, and left 0 unchanged files"), fourth::getOutput);
+    assertFalse(Files.exists(docs.resolve("producer/Extras.html")));
+    assertTrue(Files.isRegularFile(docs.resolve("producer/Values.html")));
+  }
+
+  // lay out a module with a javadoc jar the way maven-publish would
+  private static void publishModule(final Path repository, final String group, final String name, final String version, final Map<String, String> javadoc) throws IOException {
+    final Path dir = Files.createDirectories(repository.resolve(group.replace('.', '/')).resolve(name).resolve(version));
+    final String base = name + '-' + version;
+    final String pom = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+      + "  <modelVersion>4.0.0</modelVersion>\n"
+      + "  <groupId>" + group + "</groupId>\n"
+      + "  <artifactId>" + name + "</artifactId>\n"
+      + "  <version>" + version + "</version>\n"
+      + "</project>\n";
+    Files.write(dir.resolve(base + ".pom"), pom.getBytes(StandardCharsets.UTF_8));
+    writeJar(dir.resolve(base + ".jar"), Collections.singletonMap("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n"));
+    writeJar(dir.resolve(base + "-javadoc.jar"), javadoc);
+  }
+
+  private static void writeJar(final Path file, final Map<String, String> entries) throws IOException {
+    try (final ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file))) {
+      for (final Map.Entry<String, String> entry : entries.entrySet()) {
+        out.putNextEntry(new ZipEntry(entry.getKey()));
+        out.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+      }
+    }
+  }
+
+  private static Map<String, byte[]> contents(final Path root) throws IOException {
+    final Map<String, byte[]> contents = new HashMap<>();
+    try (final Stream<Path> files = Files.walk(root)) {
+      for (final Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+        contents.put(root.relativize(file).toString().replace(File.separatorChar, '/'), Files.readAllBytes(file));
+      }
+    }
+    return contents;
+  }
+
+  private static Set<String> changedFiles(final Map<String, byte[]> before, final Map<String, byte[]> after) {
+    final Set<String> changed = new HashSet<>();
+    for (final Map.Entry<String, byte[]> entry : after.entrySet()) {
+      if (!Arrays.equals(entry.getValue(), before.get(entry.getKey()))) {
+        changed.add(entry.getKey());
+      }
+    }
+    return changed;
+  }
+
+  @IndraConfigCacheFunctionalTest
+  void testAggregateJavadoc(final TestContext ctx) throws IOException {
+    ctx.copyInput("build.gradle");
+    ctx.copyInput("settings.gradle");
+    ctx.copyInput("producer/src/main/java/producer/Values.java");
+    ctx.copyInput("consumer/build.gradle");
+    ctx.copyInput("consumer/src/main/java/consumer/ValueHandler.java");
+    final BuildResult result = ctx.build(":aggregateJavadoc");
+    assertEquals(TaskOutcome.SUCCESS, result.task(":aggregateJavadoc").getOutcome());
+
+    final Path site = ctx.outputDirectory().resolve("build/docs/aggregateJavadoc");
+    assertTrue(Files.isRegularFile(site.resolve("producer/1.0.0/producer/Values.html")));
+    assertTrue(Files.isRegularFile(site.resolve("consumer/1.0.0/consumer/ValueHandler.html")));
+
+    final String index = new String(Files.readAllBytes(site.resolve("index.html")), StandardCharsets.UTF_8);
+    assertTrue(index.contains("<title>Example</title>"), index);
+    assertTrue(index.contains("consumer/1.0.0/consumer/package-summary.html"), index);
+    assertTrue(index.contains("producer/1.0.0/producer/package-summary.html"), index);
+    assertTrue(index.contains("<script src=\"search-index.js\"></script>"), index);
+    assertTrue(index.contains("aggregateSearchIndex"), index);
+
+    final String search = new String(Files.readAllBytes(site.resolve("search-index.js")), StandardCharsets.UTF_8);
+    assertTrue(search.contains("\"u\":\"producer/1.0.0/producer/Values.html\""), search);
+    assertTrue(search.contains("\"u\":\"consumer/1.0.0/consumer/ValueHandler.html\""), search);
+  }
 
   @IndraConfigCacheFunctionalTest
   void testNonCrossdocProjects(final TestContext ctx) throws IOException {
@@ -0,0 +1,68 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.crossdoc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProcessJavadocFileTest {
+  @Test
+  void testHtmlWhitespacePreserved() {
+    final String html = "<div>\n    <p>a   b</p>\n  </div>";
+    assertEquals(html, ProcessJavadocFile.minifyHtml(html));
+  }
+
+  @Test
+  void testHtmlAttributesPreserved() {
+    final String html = "<a title=\"a   b > <!-- c -->\" href='x'>d</a>";
+    assertEquals(html, ProcessJavadocFile.minifyHtml(html));
+  }
+
+  @Test
+  void testHtmlCommentsRemoved() {
+    assertEquals("<p>a</p>", ProcessJavadocFile.minifyHtml("<!-- navbar --><p>a</p>"));
+    assertEquals("<!--[if IE]>x<![endif]-->", ProcessJavadocFile.minifyHtml("<!--[if IE]>x<![endif]-->"));
+  }
+
+  @Test
+  void testHtmlPreformattedPreserved() {
+    final String pre = "<pre>  int x;\n\n  int y;</pre>";
+    assertEquals(pre, ProcessJavadocFile.minifyHtml(pre));
+    assertEquals("<PRE class=\"a\">  <!-- x -->  </PRE>", ProcessJavadocFile.minifyHtml("<PRE class=\"a\">  <!-- x -->  </PRE>"));
+    assertEquals("<preview>  x  </preview>", ProcessJavadocFile.minifyHtml("<preview>  x  <!-- y --></preview>"));
+  }
+
+  @Test
+  void testCss() {
+    assertEquals("a b{color:red;}", ProcessJavadocFile.minifyCss("/* links */\na   b {\n  color:red;\n}\n"));
+    assertEquals("a::after{content:\"  /* x */  \";}", ProcessJavadocFile.minifyCss("a::after { content:\"  /* x */  \"; }"));
+  }
+
+  @Test
+  void testJsUnchanged() {
+    final String js = "var a = `x\n    y`;\nvar b = 'c\\\n    d';\n\n  // e\n";
+    assertEquals(js, ProcessJavadocFile.minify(ProcessJavadocFile.Type.JS, js));
+  }
+}
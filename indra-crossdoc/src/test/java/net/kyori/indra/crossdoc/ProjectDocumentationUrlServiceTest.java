@@ -0,0 +1,83 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2020-2022 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.crossdoc;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.kyori.indra.test.IndraTesting;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.services.BuildServiceParameters;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProjectDocumentationUrlServiceTest {
+  private ProjectDocumentationUrlService tested;
+
+  @BeforeEach
+  void setUp() {
+    this.tested = new ProjectDocumentationUrlService() {
+      @Override
+      public BuildServiceParameters.None getParameters() {
+        return null;
+      }
+    };
+  }
+
+  @Test
+  void testUrlsComputedOnce() {
+    final AtomicInteger calls = new AtomicInteger();
+    final ProjectDocumentationUrlProvider provider = (name, path) -> {
+      calls.incrementAndGet();
+      return name + "/1.0";
+    };
+    final Map<String, String> projects = new LinkedHashMap<>();
+    projects.put(":api", "api");
+    projects.put(":core", "core");
+
+    assertEquals("api/1.0", this.tested.url(provider, "api", ":api"));
+    assertEquals(projects.keySet(), this.tested.urls(provider, projects).keySet());
+    assertEquals("core/1.0", this.tested.urls(provider, projects).get(":core"));
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  void testNameBasedProvidersSharedByValue() {
+    final ObjectFactory objects = IndraTesting.project().getObjects();
+    final NameBasedProjectDocumentationUrlProvider first = objects.newInstance(NameBasedProjectDocumentationUrlProviderImpl.class);
+    first.getVersion().set("1.0");
+    final NameBasedProjectDocumentationUrlProvider second = objects.newInstance(NameBasedProjectDocumentationUrlProviderImpl.class);
+    second.getVersion().set("1.0");
+    final NameBasedProjectDocumentationUrlProvider other = objects.newInstance(NameBasedProjectDocumentationUrlProviderImpl.class);
+    other.getVersion().set("2.0");
+
+    final Map<String, String> projects = Collections.singletonMap(":api", "api");
+    assertEquals("api/1.0", this.tested.urls(first, projects).get(":api"));
+    assertEquals("api/1.0", this.tested.urls(second, projects).get(":api"));
+    assertEquals("api/2.0", this.tested.urls(other, projects).get(":api"));
+  }
+}
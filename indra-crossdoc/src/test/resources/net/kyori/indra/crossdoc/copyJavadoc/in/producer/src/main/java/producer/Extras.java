@@ -0,0 +1,15 @@
+package producer;
+
+/**
+ * Values that are only documented for a while.
+ */
+public final class Extras {
+  /**
+   * Get the number of extra values.
+   *
+   * @return the count
+   */
+  public static int count() {
+    return 0;
+  }
+}
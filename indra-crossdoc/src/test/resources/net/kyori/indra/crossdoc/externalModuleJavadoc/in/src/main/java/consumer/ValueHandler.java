@@ -0,0 +1,10 @@
+package consumer;
+
+/**
+ * Handles values.
+ */
+public class ValueHandler {
+  public static String data() {
+    return "no";
+  }
+}
@@ -0,0 +1,12 @@
+package consumer;
+
+import producer.Values;
+
+/**
+ * Handles values produced by {@link Values}
+ */
+public class ValueHandler {
+  public static String data(final Values instance) {
+    return "no";
+  }
+}
\ No newline at end of file
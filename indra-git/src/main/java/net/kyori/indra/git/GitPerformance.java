@@ -0,0 +1,155 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2024 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.git;
+
+import java.time.Duration;
+import org.gradle.api.provider.Property;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tuning options for how JGit reads repository pack files, and how long repositories are kept open.
+ *
+ * <p>The pack file options configure JGit's process-wide window cache, so they are installed once per build, before
+ * the first repository is opened. Only the options configured on the first context to apply indra-git (the settings
+ * or root project) take effect. Any pack file option left unset will keep JGit's default.</p>
+ *
+ * @since 4.0.0
+ */
+public interface GitPerformance {
+  /**
+   * Whether to read pack files through memory-mapped windows rather than copying them onto the heap.
+   *
+   * @return the property controlling memory mapping
+   * @since 4.0.0
+   */
+  @NotNull Property<Boolean> packedGitMmap();
+
+  /**
+   * Set whether to memory-map pack files.
+   *
+   * @param packedGitMmap whether to memory-map pack files
+   * @since 4.0.0
+   */
+  default void packedGitMmap(final boolean packedGitMmap) {
+    this.packedGitMmap().set(packedGitMmap);
+  }
+
+  /**
+   * The maximum number of bytes of pack files to hold in the window cache at once.
+   *
+   * @return the property controlling the pack window cache size
+   * @since 4.0.0
+   */
+  @NotNull Property<Long> packedGitLimit();
+
+  /**
+   * Set the maximum number of bytes of pack files to hold in the window cache at once.
+   *
+   * @param packedGitLimit the pack window cache size, in bytes
+   * @since 4.0.0
+   */
+  default void packedGitLimit(final long packedGitLimit) {
+    this.packedGitLimit().set(packedGitLimit);
+  }
+
+  /**
+   * The maximum number of bytes to use for caching delta base objects.
+   *
+   * @return the property controlling the delta base cache size
+   * @since 4.0.0
+   */
+  @NotNull Property<Integer> deltaBaseCacheLimit();
+
+  /**
+   * Set the maximum number of bytes to use for caching delta base objects.
+   *
+   * @param deltaBaseCacheLimit the delta base cache size, in bytes
+   * @since 4.0.0
+   */
+  default void deltaBaseCacheLimit(final int deltaBaseCacheLimit) {
+    this.deltaBaseCacheLimit().set(deltaBaseCacheLimit);
+  }
+
+  /**
+   * The size in bytes above which objects are streamed rather than loaded fully into memory.
+   *
+   * @return the property controlling the stream threshold
+   * @since 4.0.0
+   */
+  @NotNull Property<Integer> streamFileThreshold();
+
+  /**
+   * Set the size in bytes above which objects are streamed rather than loaded fully into memory.
+   *
+   * @param streamFileThreshold the stream threshold, in bytes
+   * @since 4.0.0
+   */
+  default void streamFileThreshold(final int streamFileThreshold) {
+    this.streamFileThreshold().set(streamFileThreshold);
+  }
+
+  /**
+   * How long a repository may go unused before it is closed, releasing its pack files and cached data.
+   *
+   * <p>Closed repositories are reopened when next used. Idle repositories are checked every few seconds, and every
+   * repository is closed at the end of the build regardless, so this only bounds how long repositories stay open
+   * during a long build. If unset, repositories will stay open until the end of the build.</p>
+   *
+   * @return the property controlling the idle timeout
+   * @since 4.0.0
+   */
+  @NotNull Property<Duration> repositoryIdleTimeout();
+
+  /**
+   * Set how long a repository may go unused before it is closed.
+   *
+   * @param repositoryIdleTimeout the idle timeout
+   * @since 4.0.0
+   */
+  default void repositoryIdleTimeout(final @NotNull Duration repositoryIdleTimeout) {
+    this.repositoryIdleTimeout().set(repositoryIdleTimeout);
+  }
+
+  /**
+   * The maximum number of repositories to keep open while they are not in use.
+   *
+   * <p>Once this limit is exceeded, the least recently used repositories will be closed early. Repositories that are
+   * in use will never be closed, so more repositories may be open at once while they are being read. If unset, there
+   * is no limit.</p>
+   *
+   * @return the property controlling the open repository limit
+   * @since 4.0.0
+   */
+  @NotNull Property<Integer> maxOpenRepositories();
+
+  /**
+   * Set the maximum number of repositories to keep open while they are not in use.
+   *
+   * @param maxOpenRepositories the open repository limit
+   * @since 4.0.0
+   */
+  default void maxOpenRepositories(final int maxOpenRepositories) {
+    this.maxOpenRepositories().set(maxOpenRepositories);
+  }
+}
@@ -24,15 +24,19 @@
 package net.kyori.indra.git;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
 import javax.inject.Inject;
 import net.kyori.indra.git.internal.GitCache;
 import net.kyori.indra.git.internal.IndraGitExtensionImpl;
 import net.kyori.indra.git.internal.IndraGitService;
+import net.kyori.indra.git.task.GitStatistics;
 import net.kyori.indra.git.task.RepositoryTask;
 import net.kyori.indra.git.task.RequireClean;
 import net.kyori.indra.git.task.RequireTagged;
 import net.kyori.mammoth.ProjectOrSettingsPlugin;
 import org.gradle.api.Project;
+import org.gradle.api.initialization.ProjectDescriptor;
 import org.gradle.api.initialization.Settings;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.api.plugins.ExtensionContainer;
@@ -55,6 +59,7 @@ public abstract class GitPlugin implements ProjectOrSettingsPlugin {
   private static final String EXTENSION_NAME = "indraGit";
   public static final String REQUIRE_CLEAN_TASK = "requireClean";
   public static final String REQUIRE_TAGGED_TASK = "requireTagged";
+  public static final String GIT_STATS_TASK = "gitStats";
 
   @Inject
   protected abstract BuildEventsListenerRegistry getListenerRegistry();
@@ -77,6 +82,10 @@ public abstract class GitPlugin implements ProjectOrSettingsPlugin {
     // And create some validation tasks, but don't ever make them run
     tasks.register(REQUIRE_CLEAN_TASK, RequireClean.class);
     tasks.register(REQUIRE_TAGGED_TASK, RequireTagged.class);
+    if (target == target.getRootProject()) {
+      // statistics are collected for the whole build
+      tasks.register(GIT_STATS_TASK, GitStatistics.class);
+    }
     tasks.withType(RepositoryTask.class).configureEach(task -> {
       task.getGit().set(service);
       task.usesService(service);
@@ -96,16 +105,37 @@ public abstract class GitPlugin implements ProjectOrSettingsPlugin {
       target.getRootDir(),
       "settings"
     );
+
+    // Once every project is known, locate their repositories in bulk rather than one at a time as projects are configured
+    target.getGradle().settingsEvaluated(settings -> {
+      final Map<File, String> projects = new HashMap<>();
+      collectProjects(settings.getRootProject(), projects);
+      GitCache.getOrCreate(settings.getRootDir()).discover(projects);
+    });
+  }
+
+  private static void collectProjects(final ProjectDescriptor project, final Map<File, String> projects) {
+    projects.put(project.getProjectDir(), project.getParent() == null ? "root project '" + project.getName() + "'" : "project '" + project.getPath() + "'");
+    for (final ProjectDescriptor child : project.getChildren()) {
+      collectProjects(child, projects);
+    }
   }
 
   private Provider<IndraGitService> applyCommon(final @NotNull Gradle gradle, final ExtensionContainer extensions, final File rootDir, final File projectDir, final String displayName) {
-    // Register the service, then create an extension
+    // Create an extension, then register the service using the first extension's performance options
+    GitCache.getOrCreate(rootDir);
+    final IndraGitExtension extension = extensions.create(IndraGitExtension.class, EXTENSION_NAME, IndraGitExtensionImpl.class, rootDir, projectDir, displayName);
     final Provider<IndraGitService> service = gradle.getSharedServices().registerIfAbsent(IndraGitService.SERVICE_NAME, IndraGitService.class, params -> {
+      final GitPerformance performance = extension.performance();
       params.getParameters().getBaseDirectory().set(rootDir);
+      params.getParameters().getPackedGitMmap().set(performance.packedGitMmap());
+      params.getParameters().getPackedGitLimit().set(performance.packedGitLimit());
+      params.getParameters().getDeltaBaseCacheLimit().set(performance.deltaBaseCacheLimit());
+      params.getParameters().getStreamFileThreshold().set(performance.streamFileThreshold());
+      params.getParameters().getRepositoryIdleTimeout().set(performance.repositoryIdleTimeout());
+      params.getParameters().getMaxOpenRepositories().set(performance.maxOpenRepositories());
     });
     this.getListenerRegistry().onTaskCompletion(service);
-    GitCache.getOrCreate(rootDir);
-    extensions.create(IndraGitExtension.class, EXTENSION_NAME, IndraGitExtensionImpl.class, rootDir, projectDir, displayName);
     return service;
   }
 }
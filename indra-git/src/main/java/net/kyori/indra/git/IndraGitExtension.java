@@ -28,6 +28,7 @@ import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.gradle.api.Action;
 import org.gradle.api.java.archives.Manifest;
+import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ValueSourceSpec;
 import org.jetbrains.annotations.NotNull;
@@ -112,11 +113,57 @@ public interface IndraGitExtension {
    *
    * <p>The result will be equivalent to the result of executing {@code git describe --tags --long}</p>
    *
+   * <p>In a shallow clone, only tags at {@code HEAD} will be considered. See {@link #shallowDescribeFallback()}.</p>
+   *
    * @return the describe string, or {@code null} if this project is not in a git repository or if there are no tags in the project's history
    * @since 2.0.0
    */
   @NotNull Provider<String> describe();
 
+  /**
+   * The maximum number of commits to walk back from {@code HEAD} when computing a {@link #describe()} result.
+   *
+   * <p>This limit only applies when the repository has a
+   * <a href="https://git-scm.com/docs/git-commit-graph">commit graph</a> to read history from. If the nearest tag and
+   * its distance from {@code HEAD} cannot be determined within this many commits, {@link #describe()} will have no
+   * value rather than an inaccurate one. If unset, history will be walked until the nearest tags are found.</p>
+   *
+   * @return the maximum describe depth property
+   * @since 4.0.0
+   */
+  @NotNull Property<Integer> describeMaxDepth();
+
+  /**
+   * The value of {@link #describe()} in a shallow clone when {@code HEAD} is not tagged.
+   *
+   * <p>Shallow clones, such as those made by CI with {@code --depth=1}, are missing the history needed to find the
+   * nearest tag. In these repositories, {@link #describe()} will only look for tags at {@code HEAD}, and will use this
+   * value if none are found. If unset, {@link #describe()} will have no value.</p>
+   *
+   * @return the shallow describe fallback property
+   * @since 4.0.0
+   */
+  @NotNull Property<String> shallowDescribeFallback();
+
+  /**
+   * Options for tuning how JGit reads repositories.
+   *
+   * <p>These options apply to the entire build, and only take effect when configured in the settings or root project.</p>
+   *
+   * @return the performance options
+   * @since 4.0.0
+   */
+  @NotNull GitPerformance performance();
+
+  /**
+   * Configure options for tuning how JGit reads repositories.
+   *
+   * @param action the action to configure performance options
+   * @since 4.0.0
+   * @see #performance()
+   */
+  void performance(final @NotNull Action<? super GitPerformance> action);
+
   /**
    * Get the name of the current branch.
    *
@@ -25,6 +25,7 @@ package net.kyori.indra.git;
 
 import javax.inject.Inject;
 import net.kyori.indra.git.internal.GitCache;
+import net.kyori.indra.git.internal.GitMetrics;
 import org.eclipse.jgit.api.Git;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.provider.Property;
@@ -61,11 +62,16 @@ public abstract class RepositoryValueSource<V, P extends RepositoryValueSource.P
 
   @Override
   public final @Nullable V obtain() {
+    final long start = System.nanoTime();
     final Parameters params = this.getParameters();
-    final Git git = GitCache.get(params.getRootDir().get().getAsFile()).git(params.getProjectDir().get().getAsFile(), params.getDisplayName().get());
-    if (git == null) return null;
+    final GitCache.GitProvider provider = GitCache.get(params.getRootDir().get().getAsFile());
+    try (final GitCache.@Nullable RepositoryHandle handle = provider.open(params.getProjectDir().get().getAsFile(), params.getDisplayName().get())) {
+      if (handle == null) return null;
 
-    return this.obtain(git);
+      return this.obtain(handle.git());
+    } finally {
+      provider.metrics().record(GitMetrics.obtain(this.getClass()), System.nanoTime() - start);
+    }
   }
 
   protected abstract @Nullable V obtain(final @NotNull Git repository);
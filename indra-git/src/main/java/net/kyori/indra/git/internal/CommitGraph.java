@@ -0,0 +1,246 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2024 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.git.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A read-only view of a git <a href="https://git-scm.com/docs/gitformat-commit-graph">commit-graph</a> file.
+ *
+ * <p>Only a single, non-split, SHA-1 commit graph is supported. Commits are addressed by their
+ * position in the graph's lexicographically sorted object id list.</p>
+ */
+final class CommitGraph {
+  static final int NOT_FOUND = -1;
+
+  private static final String GRAPH_FILE = "objects/info/commit-graph";
+  private static final int SIGNATURE = 0x43475048; // CGPH
+  private static final int VERSION = 1;
+  private static final int HASH_VERSION_SHA1 = 1;
+  private static final int HEADER_LENGTH = 8;
+  private static final int CHUNK_LOOKUP_ENTRY_LENGTH = 12;
+
+  private static final int CHUNK_OID_FANOUT = 0x4f494446; // OIDF
+  private static final int CHUNK_OID_LOOKUP = 0x4f49444c; // OIDL
+  private static final int CHUNK_COMMIT_DATA = 0x43444154; // CDAT
+  private static final int CHUNK_EXTRA_EDGES = 0x45444745; // EDGE
+
+  private static final int PARENT_NONE = 0x70000000;
+  private static final int EXTRA_EDGES_NEEDED = 0x80000000;
+  private static final int LAST_EDGE = 0x80000000;
+  private static final int COMMIT_DATA_LENGTH = Constants.OBJECT_ID_LENGTH + 16;
+
+  private final ByteBuffer data;
+  private final int size;
+  private final int fanout;
+  private final int oidLookup;
+  private final int commitData;
+  private final int extraEdges;
+
+  private CommitGraph(final ByteBuffer data, final int size, final int fanout, final int oidLookup, final int commitData, final int extraEdges) {
+    this.data = data;
+    this.size = size;
+    this.fanout = fanout;
+    this.oidLookup = oidLookup;
+    this.commitData = commitData;
+    this.extraEdges = extraEdges;
+  }
+
+  /**
+   * Open the commit graph of a repository, if one is present and supported.
+   *
+   * @param gitDir the repository's git directory
+   * @return the commit graph, or {@code null} if there is no usable commit graph
+   * @throws IOException if the commit graph could not be read
+   */
+  static @Nullable CommitGraph open(final @NotNull File gitDir) throws IOException {
+    final File file = new File(RefsFingerprint.commonDirectory(gitDir), GRAPH_FILE);
+    if (!file.isFile()) return null;
+
+    final ByteBuffer data;
+    try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) return null;
+      if (File.separatorChar == '\\') {
+        // A mapped file cannot be replaced on Windows until the mapping is collected, which would block git from rewriting the graph
+        data = ByteBuffer.allocate((int) channel.size());
+        while (data.hasRemaining() && channel.read(data) >= 0) {
+          // keep reading
+        }
+        data.flip();
+      } else {
+        data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+    }
+
+    if (data.limit() < HEADER_LENGTH
+      || data.getInt(0) != SIGNATURE
+      || data.get(4) != VERSION
+      || data.get(5) != HASH_VERSION_SHA1
+      || data.get(7) != 0) { // part of a split commit-graph chain
+      return null;
+    }
+
+    final int chunkCount = data.get(6) & 0xff;
+    int fanout = -1;
+    int oidLookup = -1;
+    int commitData = -1;
+    int extraEdges = -1;
+    for (int i = 0; i < chunkCount; i++) {
+      final int entry = HEADER_LENGTH + i * CHUNK_LOOKUP_ENTRY_LENGTH;
+      final int id = data.getInt(entry);
+      final long offset = data.getLong(entry + 4);
+      if (offset < 0 || offset > data.limit()) return null;
+
+      switch (id) {
+        case CHUNK_OID_FANOUT: fanout = (int) offset; break;
+        case CHUNK_OID_LOOKUP: oidLookup = (int) offset; break;
+        case CHUNK_COMMIT_DATA: commitData = (int) offset; break;
+        case CHUNK_EXTRA_EDGES: extraEdges = (int) offset; break;
+        default: break; // optional chunks we do not use
+      }
+    }
+    if (fanout == -1 || oidLookup == -1 || commitData == -1) return null;
+
+    final int size = data.getInt(fanout + 255 * 4);
+    return new CommitGraph(data, size, fanout, oidLookup, commitData, extraEdges);
+  }
+
+  /**
+   * Get the number of commits in this graph.
+   *
+   * @return the commit count
+   */
+  int size() {
+    return this.size;
+  }
+
+  /**
+   * Find the position of a commit in the graph.
+   *
+   * @param id the commit id
+   * @return the position, or {@link #NOT_FOUND}
+   */
+  int find(final @NotNull AnyObjectId id) {
+    final byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+    id.copyRawTo(raw, 0);
+    final int first = raw[0] & 0xff;
+    int low = first == 0 ? 0 : this.data.getInt(this.fanout + (first - 1) * 4);
+    int high = this.data.getInt(this.fanout + first * 4) - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int cmp = this.compareId(mid, raw);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return NOT_FOUND;
+  }
+
+  private int compareId(final int position, final byte[] raw) {
+    final int base = this.oidLookup + position * Constants.OBJECT_ID_LENGTH;
+    for (int i = 0; i < raw.length; i++) {
+      final int cmp = Integer.compare(this.data.get(base + i) & 0xff, raw[i] & 0xff);
+      if (cmp != 0) return cmp;
+    }
+    return 0;
+  }
+
+  /**
+   * Get the id of the commit at a position.
+   *
+   * @param position the position
+   * @return the commit id
+   */
+  @NotNull ObjectId id(final int position) {
+    final byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+    final int base = this.oidLookup + position * Constants.OBJECT_ID_LENGTH;
+    for (int i = 0; i < raw.length; i++) {
+      raw[i] = this.data.get(base + i);
+    }
+    return ObjectId.fromRaw(raw);
+  }
+
+  /**
+   * Get the commit time of a commit, in seconds since the epoch.
+   *
+   * @param position the position
+   * @return the commit time
+   */
+  long commitTime(final int position) {
+    final int base = this.commitData(position) + Constants.OBJECT_ID_LENGTH + 8;
+    return ((long) (this.data.getInt(base) & 0x3) << 32) | (this.data.getInt(base + 4) & 0xffffffffL);
+  }
+
+  /**
+   * Get the positions of a commit's parents.
+   *
+   * @param position the position
+   * @return the parent positions
+   */
+  int[] parents(final int position) {
+    final int base = this.commitData(position) + Constants.OBJECT_ID_LENGTH;
+    final int first = this.data.getInt(base);
+    final int second = this.data.getInt(base + 4);
+    if (first == PARENT_NONE) {
+      return new int[0];
+    } else if (second == PARENT_NONE) {
+      return new int[] {first};
+    } else if ((second & EXTRA_EDGES_NEEDED) == 0) {
+      return new int[] {first, second};
+    }
+
+    // octopus merge, remaining parents are in the extra edge list
+    if (this.extraEdges == -1) throw new IllegalStateException("Commit graph references extra edges, but has no EDGE chunk");
+    int count = 1;
+    int edge = this.extraEdges + (second & ~EXTRA_EDGES_NEEDED) * 4;
+    while ((this.data.getInt(edge + (count - 1) * 4) & LAST_EDGE) == 0) {
+      count++;
+    }
+    final int[] parents = new int[count + 1];
+    parents[0] = first;
+    for (int i = 0; i < count; i++) {
+      parents[i + 1] = this.data.getInt(edge) & ~LAST_EDGE;
+      edge += 4;
+    }
+    return parents;
+  }
+
+  private int commitData(final int position) {
+    if (position < 0 || position >= this.size) throw new IndexOutOfBoundsException("Position " + position + " is not within commit graph of size " + this.size);
+    return this.commitData + position * COMMIT_DATA_LENGTH;
+  }
+}
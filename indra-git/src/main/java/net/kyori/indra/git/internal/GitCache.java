@@ -30,23 +30,46 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryBuilder;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
 
 public class GitCache {
   private static final ConcurrentMap<File, Instance> PROJECT_CACHES = new ConcurrentHashMap<>();
+  private static final long SWEEP_INTERVAL_SECONDS = 10;
+  private static final ScheduledThreadPoolExecutor SWEEPER = new ScheduledThreadPoolExecutor(1, task -> {
+    final Thread thread = new Thread(task, "indra-git repository sweeper");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private static @Nullable ScheduledFuture<?> sweep; // guarded by GitCache.class
+
+  static {
+    // the thread exits while no sweep is scheduled, so an idle daemon holds nothing
+    SWEEPER.setKeepAliveTime(1, TimeUnit.MINUTES);
+    SWEEPER.allowCoreThreadTimeOut(true);
+  }
 
   public static GitProvider getOrCreate(final File rootDir) {
     return PROJECT_CACHES.computeIfAbsent(rootDir, Instance::new);
@@ -60,6 +83,81 @@ public class GitCache {
     return ret;
   }
 
+  /**
+   * Close every repository, across all providers, that has gone unused for longer than its provider allows.
+   */
+  static void evictIdle() {
+    final long now = System.nanoTime();
+    for (final Instance instance : PROJECT_CACHES.values()) {
+      instance.evictIdle(now);
+    }
+  }
+
+  /**
+   * Periodically close idle repositories, until every provider has been closed.
+   *
+   * <p>Without this, repositories would only be checked when the cache is used, so they would stay open in a daemon
+   * that has gone quiet.</p>
+   */
+  static synchronized void scheduleSweep() {
+    if (sweep == null) {
+      sweep = SWEEPER.scheduleWithFixedDelay(GitCache::sweep, SWEEP_INTERVAL_SECONDS, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+  }
+
+  @VisibleForTesting
+  static void sweep() {
+    evictIdle();
+    synchronized (GitCache.class) {
+      if (PROJECT_CACHES.isEmpty() && sweep != null) {
+        sweep.cancel(false);
+        sweep = null;
+      }
+    }
+  }
+
+  @VisibleForTesting
+  static synchronized boolean sweepScheduled() {
+    return sweep != null;
+  }
+
+  /**
+   * Get the number of repositories a provider currently holds open.
+   *
+   * @param provider the provider
+   * @return the number of open repositories
+   */
+  @VisibleForTesting
+  static int openRepositories(final GitProvider provider) {
+    int count = 0;
+    for (final GitWrapper wrapper : ((Instance) provider).repositories) {
+      if (wrapper.isOpen()) count++;
+    }
+    return count;
+  }
+
+  /**
+   * Get the window cache configuration a provider has installed.
+   *
+   * @param provider the provider
+   * @return the installed configuration, or {@code null} if none has been installed
+   */
+  @VisibleForTesting
+  static @Nullable WindowCacheConfig installedWindowCache(final GitProvider provider) {
+    return ((Instance) provider).installedWindowCache;
+  }
+
+  /**
+   * Get the retention policy used by a provider.
+   *
+   * @param provider the provider
+   * @return the retention policy, or {@code null} if none has been provided
+   */
+  @VisibleForTesting
+  static @Nullable Retention retention(final GitProvider provider) {
+    return ((Instance) provider).resolveRetention();
+  }
+
   public static void close(final GitProvider provider) {
     final Instance inst = (Instance) provider;
     if (PROJECT_CACHES.remove(inst.baseDirectory) != inst) {
@@ -68,12 +166,85 @@ public class GitCache {
     inst.close();
   }
 
+  /**
+   * Get the tag index for a repository.
+   *
+   * <p>Repositories opened through a provider share one index for their lifetime,
+   * while any other repository will receive a fresh index.</p>
+   *
+   * @param repository the repository to index
+   * @return the tag index
+   */
+  static TagIndex tagIndex(final Repository repository) {
+    for (final Instance instance : PROJECT_CACHES.values()) {
+      final @Nullable TagIndex existing = instance.tagIndices.get(repository);
+      if (existing != null) return existing;
+    }
+    return new TagIndex(repository);
+  }
+
   private GitCache() {
   }
 
   @ApiStatus.NonExtendable
   public interface GitProvider {
+    /**
+     * Get the repository for a project.
+     *
+     * <p>No reference to the repository is held, so it may be closed from another thread once it has been idle for
+     * long enough. The result must only be used for a single short query and never stored. Anything else should hold
+     * a handle from {@link #open(File, String)} instead.</p>
+     *
+     * @param projectDir the project directory
+     * @param displayName the display name of the project
+     * @return the repository, or {@code null} if the project is not in a git repository
+     */
     @Nullable Git git(final File projectDir, final @NotNull String displayName);
+
+    /**
+     * Acquire a handle to the repository for a project.
+     *
+     * <p>The repository will not be closed while any handle to it is held.</p>
+     *
+     * @param projectDir the project directory
+     * @param displayName the display name of the project
+     * @return a handle which must be closed once the repository is no longer needed, or {@code null} if the project is not in a git repository
+     */
+    @Nullable RepositoryHandle open(final File projectDir, final @NotNull String displayName);
+
+    /**
+     * Locate repositories for many projects at once.
+     *
+     * <p>Projects are resolved in parallel, and each directory between a project and the base directory will only be examined once.</p>
+     *
+     * @param projects a map of project directory to project display name
+     */
+    void discover(final @NotNull Map<File, String> projects);
+
+    /**
+     * Provide the window cache configuration to install before the first repository is opened.
+     *
+     * <p>Only the first configuration provided will be used, and it will be installed at most once for this provider.</p>
+     *
+     * @param config a supplier of the configuration, which may return {@code null} to keep the current configuration
+     */
+    void windowCache(final @NotNull Supplier<@Nullable WindowCacheConfig> config);
+
+    /**
+     * Provide the policy for closing repositories that are not in use.
+     *
+     * <p>Only the first policy provided will be used. Until a policy is provided, repositories are never closed before the provider is.</p>
+     *
+     * @param retention a supplier of the retention policy, queried when the first repository is opened
+     */
+    void retention(final @NotNull Supplier<Retention> retention);
+
+    /**
+     * Get latency statistics for queries made against this provider's repositories.
+     *
+     * @return the statistics
+     */
+    @NotNull GitMetrics metrics();
   }
 
   private static final class Instance implements Closeable, GitProvider {
@@ -82,18 +253,153 @@ public class GitCache {
     private final File baseDirectory;
     private volatile boolean open = true;
     private final Map<File, GitWrapper> projectRepos = new ConcurrentHashMap<>();
+    private final Map<Repository, TagIndex> tagIndices = new ConcurrentHashMap<>();
+    private final Map<File, Boolean> probedDirectories = new ConcurrentHashMap<>();
+    private volatile @Nullable File canonicalBaseDirectory;
+    private volatile @Nullable Supplier<@Nullable WindowCacheConfig> windowCache;
+    private final AtomicBoolean windowCacheInstalled = new AtomicBoolean();
+    private volatile @Nullable WindowCacheConfig installedWindowCache;
+    private final GitMetrics metrics = new GitMetrics();
+    private final Set<GitWrapper> repositories = ConcurrentHashMap.newKeySet();
+    private volatile @Nullable Supplier<Retention> retentionSupplier;
+    private volatile @Nullable Retention retention;
 
     Instance(final File baseDirectory) {
       this.baseDirectory = baseDirectory;
     }
 
+    @Override
+    public void discover(final @NotNull Map<File, String> projects) {
+      final long start = System.nanoTime();
+      projects.entrySet().parallelStream()
+        .filter(project -> !this.projectRepos.containsKey(project.getKey()))
+        .forEach(project -> this.git(project.getKey(), project.getValue()));
+      LOGGER.info("indra-git: Discovered repositories for {} projects in {}ms", projects.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public @NotNull GitMetrics metrics() {
+      return this.metrics;
+    }
+
+    @Override
+    public synchronized void windowCache(final @NotNull Supplier<@Nullable WindowCacheConfig> config) {
+      if (this.windowCache == null) {
+        this.windowCache = config;
+      }
+    }
+
+    @Override
+    public synchronized void retention(final @NotNull Supplier<Retention> retention) {
+      if (this.retentionSupplier == null) {
+        this.retentionSupplier = retention;
+      }
+    }
+
+    private @Nullable Retention resolveRetention() {
+      @Nullable Retention retention = this.retention;
+      if (retention == null) {
+        final @Nullable Supplier<Retention> supplier = this.retentionSupplier;
+        if (supplier == null) return null;
+        this.retention = retention = supplier.get();
+        if (retention.idleTimeoutNanos >= 0) {
+          GitCache.scheduleSweep();
+        }
+      }
+      return retention;
+    }
+
     @Override
     public @Nullable Git git(final File projectDir, final @NotNull String displayName) {
+      final GitWrapper wrapper = this.locate(projectDir, displayName);
+      if (wrapper.git == null) return null;
+
+      // without a handle, this only counts as a use of the repository, and must not close any other repository that
+      // a caller of this method may still be using
+      wrapper.acquire();
+      wrapper.release();
+      return wrapper.git;
+    }
+
+    @Override
+    public @Nullable RepositoryHandle open(final File projectDir, final @NotNull String displayName) {
+      final GitWrapper wrapper = this.locate(projectDir, displayName);
+      if (wrapper.git == null) return null;
+
+      wrapper.acquire();
+      this.enforceLimit();
+      return new RepositoryHandle(wrapper);
+    }
+
+    void evictIdle(final long now) {
+      final @Nullable Retention retention = this.open ? this.resolveRetention() : null;
+      if (retention == null || retention.idleTimeoutNanos < 0) return;
+
+      for (final GitWrapper wrapper : this.repositories) {
+        if (wrapper.evictIfIdle(now, retention.idleTimeoutNanos)) {
+          LOGGER.info("indra-git: Closed repository at {} after it was unused for {}ms", wrapper.repository.getDirectory(), retention.idleTimeoutNanos / 1_000_000);
+        }
+      }
+    }
+
+    private void enforceLimit() {
+      final @Nullable Retention retention = this.resolveRetention();
+      if (retention == null || retention.maxOpenRepositories <= 0) return;
+
+      final List<GitWrapper> idle = new ArrayList<>();
+      int openCount = 0;
+      for (final GitWrapper wrapper : this.repositories) {
+        if (wrapper.isOpen()) {
+          openCount++;
+          if (wrapper.isIdle()) idle.add(wrapper);
+        }
+      }
+      if (openCount <= retention.maxOpenRepositories) return;
+
+      // close the least recently used repositories first, though any that are in use must stay open
+      idle.sort(Comparator.comparingLong(GitWrapper::lastUsed));
+      for (final GitWrapper wrapper : idle) {
+        if (openCount <= retention.maxOpenRepositories) break;
+        if (wrapper.evict()) {
+          openCount--;
+          LOGGER.info("indra-git: Closed repository at {} to stay within the limit of {} open repositories", wrapper.repository.getDirectory(), retention.maxOpenRepositories);
+        }
+      }
+    }
+
+    private void installWindowCache() {
+      final @Nullable Supplier<@Nullable WindowCacheConfig> supplier = this.windowCache;
+      if (supplier == null || this.windowCacheInstalled.get() || !this.windowCacheInstalled.compareAndSet(false, true)) return;
+
+      final @Nullable WindowCacheConfig config = supplier.get();
+      if (config != null) {
+        config.install();
+        this.installedWindowCache = config;
+        LOGGER.info("indra-git: Installed window cache configuration (mmap={}, packedGitLimit={}, deltaBaseCacheLimit={}, streamFileThreshold={})",
+          config.isPackedGitMMAP(), config.getPackedGitLimit(), config.getDeltaBaseCacheLimit(), config.getStreamFileThreshold());
+      }
+    }
+
+    private File canonicalBaseDirectory() throws IOException {
+      File canonical = this.canonicalBaseDirectory;
+      if (canonical == null) {
+        this.canonicalBaseDirectory = canonical = this.baseDirectory.getCanonicalFile();
+      }
+      return canonical;
+    }
+
+    private boolean isProbedGitDir(final File directory) {
+      return this.probedDirectories.computeIfAbsent(directory, Instance::isGitDir);
+    }
+
+    private GitWrapper locate(final File projectDir, final @NotNull String displayName) {
       if (!this.open) {
         throw new IllegalStateException("Tried to access git repository after close");
       }
       final @Nullable GitWrapper wrapper = this.projectRepos.get(projectDir);
-      if (wrapper != null) return wrapper.git; // found
+      if (wrapper != null) return wrapper; // found
+      this.installWindowCache();
+      this.resolveRetention();
 
       // Attempt to compute a repository based on the project info
       // Travel up the directory tree to try and locate projects
@@ -101,28 +407,32 @@ public class GitCache {
       final File rootProjectDir;
       final File realProjectDir;
       try {
-        rootProjectDir = this.baseDirectory.getCanonicalFile();
+        rootProjectDir = this.canonicalBaseDirectory();
         realProjectDir = rawProjectDir.getCanonicalFile();
         if (!realProjectDir.getPath().startsWith(rootProjectDir.getPath())) {
           throw new IllegalArgumentException("Project directory " + rawProjectDir + " was not within the root project!");
         }
 
+        // Every directory we pass through resolves to the same repository, so remember them for other projects
+        final List<File> visited = new ArrayList<>();
         File targetDir = realProjectDir;
         do {
-          if (isGitDir(targetDir)) {
-            LOGGER.debug("indra-git: Examining directory {} for {}", targetDir, displayName);
-            final GitWrapper potentialExisting = this.projectRepos.get(targetDir);
-            if (potentialExisting != null) {
-              LOGGER.info("indra-git: Found existing git repository for {} starting in directory {} via {}", displayName, rawProjectDir, targetDir);
-              // Once values make it into the map, they are the only possibility
-              this.projectRepos.put(rawProjectDir, potentialExisting);
-              return potentialExisting.git;
-            }
+          final GitWrapper potentialExisting = this.projectRepos.get(targetDir);
+          if (potentialExisting != null) {
+            LOGGER.info("indra-git: Found existing git repository for {} starting in directory {} via {}", displayName, rawProjectDir, targetDir);
+            // Once values make it into the map, they are the only possibility
+            this.remember(rawProjectDir, visited, potentialExisting);
+            return potentialExisting;
+          }
 
+          if (this.isProbedGitDir(targetDir)) {
+            LOGGER.debug("indra-git: Examining directory {} for {}", targetDir, displayName);
             try {
               final @Nullable File realGit = resolveGit(targetDir);
               if (realGit == null) continue;
+              final long openStart = System.nanoTime();
               final Repository repo = new RepositoryBuilder().setWorkTree(targetDir).setGitDir(realGit).setMustExist(true).build();
+              this.metrics.record(GitMetrics.OPEN, System.nanoTime() - openStart);
 
               GitWrapper repoWrapper = new GitWrapper(repo);
               final GitWrapper existing = this.projectRepos.putIfAbsent(targetDir, repoWrapper);
@@ -130,26 +440,38 @@ public class GitCache {
                 repo.close();
                 repoWrapper = existing;
               } else {
+                this.repositories.add(repoWrapper);
+                this.tagIndices.put(repo, new TagIndex(repo));
                 LOGGER.info("indra-git: Located and initialized repository for project {} in {}, with git directory at {}", displayName, targetDir, repo.getDirectory());
               }
 
-              this.projectRepos.put(rawProjectDir, repoWrapper);
-              return repoWrapper.git;
+              this.remember(rawProjectDir, visited, repoWrapper);
+              return repoWrapper;
             } catch (final RepositoryNotFoundException ex) {
               LOGGER.debug("indra-git: Unable to open repository found in {} for {}", targetDir, displayName, ex);
               // continue up the directory tree
+            } finally {
+              visited.add(targetDir);
             }
           } else {
             LOGGER.debug("indra-git: Skipping directory {} while locating repository for {}", targetDir, displayName);
+            visited.add(targetDir);
           }
         } while ((!rootProjectDir.equals(targetDir)) && (targetDir = targetDir.getParentFile()) != null);
         // At this point we're not found
-        this.projectRepos.put(rawProjectDir, GitWrapper.NOT_FOUND);
+        this.remember(rawProjectDir, visited, GitWrapper.NOT_FOUND);
       } catch (final IOException ex) {
         LOGGER.warn("indra-git: Failed to open git repository for {}:", displayName, ex);
       }
       LOGGER.info("indra-git: No git repository found for {}", displayName);
-      return null;
+      return GitWrapper.NOT_FOUND;
+    }
+
+    private void remember(final File projectDir, final List<File> visited, final GitWrapper wrapper) {
+      for (final File directory : visited) {
+        this.projectRepos.putIfAbsent(directory, wrapper);
+      }
+      this.projectRepos.put(projectDir, wrapper);
     }
 
     private static final String GIT_DIR = ".git";
@@ -187,14 +509,62 @@ public class GitCache {
     @Override
     public void close() {
       this.open = false;
-      final Set<GitWrapper> repos = new HashSet<>(this.projectRepos.values());
+      final Set<GitWrapper> repos = new HashSet<>(this.repositories);
       this.projectRepos.clear();
+      this.repositories.clear();
+      this.tagIndices.clear();
+      this.probedDirectories.clear();
       for (final GitWrapper wrapper : repos) {
-        if (wrapper.repository != null) {
-          wrapper.repository.close();
-        }
+        wrapper.forceClose();
+      }
+
+    }
+  }
+
+  /**
+   * How long unused repositories are kept open.
+   */
+  public static final class Retention {
+    final long idleTimeoutNanos;
+    final int maxOpenRepositories;
+
+    /**
+     * Create a new retention policy.
+     *
+     * @param idleTimeoutNanos the time after its last use that a repository will be closed, or a negative value to never close idle repositories
+     * @param maxOpenRepositories the maximum number of repositories to keep open when not in use, or {@code 0} for no limit
+     */
+    public Retention(final long idleTimeoutNanos, final int maxOpenRepositories) {
+      this.idleTimeoutNanos = idleTimeoutNanos;
+      this.maxOpenRepositories = maxOpenRepositories;
+    }
+  }
+
+  /**
+   * A reference to an open repository, which will be kept open until the handle is closed.
+   */
+  public static final class RepositoryHandle implements net.kyori.indra.git.RepositoryHandle {
+    private final GitWrapper wrapper;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    RepositoryHandle(final GitWrapper wrapper) {
+      this.wrapper = wrapper;
+    }
+
+    @Override
+    public @NotNull Git git() {
+      if (this.closed.get()) {
+        throw new IllegalStateException("Tried to access git repository through a closed handle");
       }
+      return this.wrapper.git;
+    }
 
+    @Override
+    public void close() {
+      if (this.closed.compareAndSet(false, true)) {
+        this.wrapper.release();
+        evictIdle();
+      }
     }
   }
 
@@ -203,10 +573,58 @@ public class GitCache {
 
     final @Nullable Git git;
     final @Nullable Repository repository;
+    // a closed repository stays usable, and will reopen its pack files on demand, so handles only track when it is safe to close
+    private int handles;
+    private boolean open = true;
+    private long lastUsed = System.nanoTime();
 
     GitWrapper(final @Nullable Repository repo) {
       this.repository = repo;
       this.git = repo == null ? null : Git.wrap(repo);
     }
+
+    synchronized void acquire() {
+      if (!this.open) {
+        this.repository.incrementOpen();
+        this.open = true;
+      }
+      this.handles++;
+      this.lastUsed = System.nanoTime();
+    }
+
+    synchronized void release() {
+      this.handles--;
+      this.lastUsed = System.nanoTime();
+    }
+
+    synchronized boolean isOpen() {
+      return this.open;
+    }
+
+    synchronized boolean isIdle() {
+      return this.handles == 0;
+    }
+
+    synchronized long lastUsed() {
+      return this.lastUsed;
+    }
+
+    synchronized boolean evictIfIdle(final long now, final long idleTimeoutNanos) {
+      return now - this.lastUsed >= idleTimeoutNanos && this.evict();
+    }
+
+    synchronized boolean evict() {
+      if (!this.open || this.handles > 0) return false;
+      this.repository.close();
+      this.open = false;
+      return true;
+    }
+
+    synchronized void forceClose() {
+      if (this.open) {
+        this.repository.close();
+        this.open = false;
+      }
+    }
   }
 }
@@ -0,0 +1,198 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2024 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.git.internal;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Latency statistics for git queries made during a build, grouped by query type.
+ *
+ * @since 4.0.0
+ */
+public final class GitMetrics {
+  /**
+   * The query type recorded for opening a repository.
+   *
+   * @since 4.0.0
+   */
+  public static final String OPEN = "open";
+  private static final String OBTAIN_PREFIX = "obtain:";
+
+  private final ConcurrentMap<String, Recorder> recorders = new ConcurrentHashMap<>();
+
+  GitMetrics() {
+  }
+
+  /**
+   * Get the query type recorded for obtaining a value from a value source.
+   *
+   * @param valueSource the value source type, which may be a Gradle-generated subclass
+   * @return the query type
+   * @since 4.0.0
+   */
+  public static @NotNull String obtain(final @NotNull Class<?> valueSource) {
+    String name = valueSource.getName();
+    // value sources are instantiated as generated subclasses, which should be grouped with the original type
+    if (name.endsWith("$Inject")) name = name.substring(0, name.length() - "$Inject".length());
+    if (name.endsWith("_Decorated")) name = name.substring(0, name.length() - "_Decorated".length());
+    return OBTAIN_PREFIX + name;
+  }
+
+  /**
+   * Record the latency of one query.
+   *
+   * @param type the query type
+   * @param nanos the time taken by the query, in nanoseconds
+   * @since 4.0.0
+   */
+  public void record(final @NotNull String type, final long nanos) {
+    this.recorders.computeIfAbsent(type, $ -> new Recorder()).record(nanos);
+  }
+
+  /**
+   * Get the statistics recorded so far.
+   *
+   * @return a map of query type to statistics, sorted by type
+   * @since 4.0.0
+   */
+  public @NotNull Map<String, Query> queries() {
+    final Map<String, Query> ret = new TreeMap<>();
+    for (final Map.Entry<String, Recorder> entry : this.recorders.entrySet()) {
+      ret.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return Collections.unmodifiableMap(ret);
+  }
+
+  /**
+   * Write the statistics recorded so far as a JSON document.
+   *
+   * @param writer the writer to write to
+   * @throws IOException if unable to write
+   * @since 4.0.0
+   */
+  public void writeJson(final @NotNull Writer writer) throws IOException {
+    writer.write("{\n  \"queries\": {");
+    boolean first = true;
+    for (final Map.Entry<String, Query> entry : this.queries().entrySet()) {
+      final Query query = entry.getValue();
+      writer.write(first ? "\n" : ",\n");
+      first = false;
+      writer.write("    \"");
+      writeEscaped(writer, entry.getKey());
+      writer.write("\": {\"count\": " + query.count() + ", \"totalNanos\": " + query.totalNanos() + ", \"maxNanos\": " + query.maxNanos() + "}");
+    }
+    writer.write(first ? "}\n}\n" : "\n  }\n}\n");
+  }
+
+  private static void writeEscaped(final Writer writer, final String value) throws IOException {
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        writer.write('\\');
+        writer.write(c);
+      } else if (c < 0x20) {
+        writer.write(String.format("\\u%04x", (int) c));
+      } else {
+        writer.write(c);
+      }
+    }
+  }
+
+  private static final class Recorder {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(final long nanos) {
+      this.count.increment();
+      this.total.add(nanos);
+      this.max.accumulate(nanos);
+    }
+
+    Query snapshot() {
+      return new Query(this.count.sum(), this.total.sum(), this.max.get());
+    }
+  }
+
+  /**
+   * Statistics for a single query type.
+   *
+   * @since 4.0.0
+   */
+  public static final class Query {
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    Query(final long count, final long totalNanos, final long maxNanos) {
+      this.count = count;
+      this.totalNanos = totalNanos;
+      this.maxNanos = maxNanos;
+    }
+
+    /**
+     * The number of queries made.
+     *
+     * @return the query count
+     * @since 4.0.0
+     */
+    public long count() {
+      return this.count;
+    }
+
+    /**
+     * The combined time taken by every query.
+     *
+     * @return the total latency, in nanoseconds
+     * @since 4.0.0
+     */
+    public long totalNanos() {
+      return this.totalNanos;
+    }
+
+    /**
+     * The time taken by the slowest query.
+     *
+     * @return the maximum latency, in nanoseconds
+     * @since 4.0.0
+     */
+    public long maxNanos() {
+      return this.maxNanos;
+    }
+
+    @Override
+    public String toString() {
+      return "Query{count=" + this.count + ", totalNanos=" + this.totalNanos + ", maxNanos=" + this.maxNanos + "}";
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2024 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.git.internal;
+
+import java.time.Duration;
+import javax.inject.Inject;
+import net.kyori.indra.git.GitPerformance;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class GitPerformanceImpl implements GitPerformance {
+  private final Property<Boolean> packedGitMmap;
+  private final Property<Long> packedGitLimit;
+  private final Property<Integer> deltaBaseCacheLimit;
+  private final Property<Integer> streamFileThreshold;
+  private final Property<Duration> repositoryIdleTimeout;
+  private final Property<Integer> maxOpenRepositories;
+
+  @Inject
+  public GitPerformanceImpl(final ObjectFactory objects) {
+    this.packedGitMmap = objects.property(Boolean.class);
+    this.packedGitLimit = objects.property(Long.class);
+    this.deltaBaseCacheLimit = objects.property(Integer.class);
+    this.streamFileThreshold = objects.property(Integer.class);
+    this.repositoryIdleTimeout = objects.property(Duration.class);
+    this.maxOpenRepositories = objects.property(Integer.class);
+  }
+
+  @Override
+  public @NotNull Property<Boolean> packedGitMmap() {
+    return this.packedGitMmap;
+  }
+
+  @Override
+  public @NotNull Property<Long> packedGitLimit() {
+    return this.packedGitLimit;
+  }
+
+  @Override
+  public @NotNull Property<Integer> deltaBaseCacheLimit() {
+    return this.deltaBaseCacheLimit;
+  }
+
+  @Override
+  public @NotNull Property<Integer> streamFileThreshold() {
+    return this.streamFileThreshold;
+  }
+
+  @Override
+  public @NotNull Property<Duration> repositoryIdleTimeout() {
+    return this.repositoryIdleTimeout;
+  }
+
+  @Override
+  public @NotNull Property<Integer> maxOpenRepositories() {
+    return this.maxOpenRepositories;
+  }
+
+  /**
+   * Create a window cache configuration from tuning options.
+   *
+   * @param packedGitMmap whether to memory-map pack files
+   * @param packedGitLimit the pack window cache size
+   * @param deltaBaseCacheLimit the delta base cache size
+   * @param streamFileThreshold the stream threshold
+   * @return a configuration with JGit's defaults for any unset option, or {@code null} if no option is set
+   */
+  static @Nullable WindowCacheConfig windowCacheConfig(
+    final Provider<Boolean> packedGitMmap,
+    final Provider<Long> packedGitLimit,
+    final Provider<Integer> deltaBaseCacheLimit,
+    final Provider<Integer> streamFileThreshold
+  ) {
+    if (!packedGitMmap.isPresent() && !packedGitLimit.isPresent() && !deltaBaseCacheLimit.isPresent() && !streamFileThreshold.isPresent()) {
+      return null; // leave any existing configuration alone
+    }
+
+    final WindowCacheConfig config = new WindowCacheConfig();
+    if (packedGitMmap.isPresent()) config.setPackedGitMMAP(packedGitMmap.get());
+    if (packedGitLimit.isPresent()) config.setPackedGitLimit(packedGitLimit.get());
+    if (deltaBaseCacheLimit.isPresent()) config.setDeltaBaseCacheLimit(deltaBaseCacheLimit.get());
+    if (streamFileThreshold.isPresent()) config.setStreamFileThreshold(streamFileThreshold.get());
+    return config;
+  }
+
+  @Nullable WindowCacheConfig windowCacheConfig() {
+    return windowCacheConfig(this.packedGitMmap, this.packedGitLimit, this.deltaBaseCacheLimit, this.streamFileThreshold);
+  }
+
+  /**
+   * Create a repository retention policy from tuning options.
+   *
+   * @param repositoryIdleTimeout the idle timeout, or unset to never close idle repositories
+   * @param maxOpenRepositories the open repository limit, or unset for no limit
+   * @return the retention policy
+   */
+  static GitCache.Retention retention(final Provider<Duration> repositoryIdleTimeout, final Provider<Integer> maxOpenRepositories) {
+    return new GitCache.Retention(
+      repositoryIdleTimeout.isPresent() ? repositoryIdleTimeout.get().toNanos() : -1,
+      maxOpenRepositories.getOrElse(0)
+    );
+  }
+
+  GitCache.Retention retention() {
+    return retention(this.repositoryIdleTimeout, this.maxOpenRepositories);
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2024 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.git.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An implementation of {@code git describe --tags --long} that reads history from the commit graph.
+ *
+ * <p>This follows the same candidate selection as git itself, visiting commits newest first by commit time,
+ * so results match the git command line even when commit times are skewed. Parents and commit times are
+ * read from the commit graph, and only commits newer than the graph are read from the object database.</p>
+ */
+final class GraphDescriber {
+  private static final int MAX_CANDIDATES = 10; // matches git's default
+  private static final int ABBREVIATED_LENGTH = 7;
+
+  // Newer commits first, with commits of the same time in the order they were queued, like git's commit_list_insert_by_date
+  private static final Comparator<Node> ORDER = Comparator.<Node>comparingLong(node -> -node.time)
+    .thenComparingLong(node -> node.queuedAt);
+
+  private final Repository repository;
+  private final CommitGraph graph;
+  private final TagIndex tags;
+  private final int maxDepth;
+  private final Map<Integer, Node> graphNodes = new HashMap<>();
+  private final Map<ObjectId, Node> looseNodes = new HashMap<>();
+  private @Nullable RevWalk walk;
+  private long queued;
+  private int seen;
+  private boolean exhausted;
+
+  GraphDescriber(final @NotNull Repository repository, final @NotNull CommitGraph graph, final @NotNull TagIndex tags, final int maxDepth) {
+    this.repository = repository;
+    this.graph = graph;
+    this.tags = tags;
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * Describe a commit.
+   *
+   * <p>A result is only returned once it is certain, so when the walk runs out of its maximum depth before the
+   * distance to the nearest tag is known, there is no result, and {@link #exhausted()} is set.</p>
+   *
+   * @param target the commit to describe
+   * @return the describe string, or {@code null} if no tag is reachable or the maximum depth was reached
+   * @throws IOException if commits outside the graph could not be read
+   */
+  @Nullable String describe(final @NotNull ObjectId target) throws IOException {
+    this.seen = 0;
+    this.exhausted = false;
+    try {
+      final @Nullable Ref exact = bestTag(this.tags.tagsAt(target));
+      if (exact != null) return this.format(exact, 0, target);
+
+      final PriorityQueue<Node> queue = new PriorityQueue<>(ORDER);
+      final Node start = this.node(target);
+      start.seen = true;
+      start.queuedAt = this.queued++;
+      queue.add(start);
+
+      final List<Candidate> candidates = new ArrayList<>();
+      final int taggedCommits = this.tags.taggedCommitCount();
+      int annotated = 0;
+      @Nullable Node gaveUpOn = null;
+      while (!queue.isEmpty()) {
+        if (this.seen >= this.maxDepth) {
+          this.exhausted = true;
+          return null;
+        }
+        final Node commit = queue.poll();
+        this.seen++;
+
+        // Stop once there are enough candidates, or every tagged commit has been found
+        if (candidates.size() == MAX_CANDIDATES || candidates.size() == taggedCommits) {
+          gaveUpOn = commit;
+          break;
+        }
+
+        final @Nullable Ref tag = bestTag(this.tags.tagsAt(commit.id()));
+        if (tag != null) {
+          final Candidate candidate = new Candidate(tag, this.seen - 1, 1 << candidates.size());
+          candidates.add(candidate);
+          commit.flags |= candidate.flag;
+          if (tag.getPeeledObjectId() != null) annotated++;
+        }
+
+        for (final Candidate candidate : candidates) {
+          if ((commit.flags & candidate.flag) == 0) candidate.depth++;
+        }
+        // Stop if the only remaining path is already covered by a candidate
+        if (annotated > 0 && queue.isEmpty()) break;
+        this.enqueueParents(commit, queue);
+      }
+      if (candidates.isEmpty()) return null;
+
+      // Once we have enough candidates, count the remaining commits that are not reachable from the best
+      final Candidate best = minDepth(candidates);
+      if (gaveUpOn != null) {
+        gaveUpOn.queuedAt = this.queued++;
+        queue.add(gaveUpOn);
+        this.seen--;
+      }
+      while (!queue.isEmpty()) {
+        if (this.seen >= this.maxDepth) {
+          // the remaining commits could still add to the depth
+          this.exhausted = true;
+          return null;
+        }
+        final Node commit = queue.poll();
+        this.seen++;
+        if ((commit.flags & best.flag) != 0) {
+          if (allFlagged(queue, best.flag)) break;
+        } else {
+          best.depth++;
+        }
+        this.enqueueParents(commit, queue);
+      }
+      return this.format(best.tag, best.depth, target);
+    } finally {
+      if (this.walk != null) {
+        this.walk.close();
+      }
+    }
+  }
+
+  /**
+   * The number of commits visited by the last call to {@link #describe(ObjectId)}.
+   *
+   * @return the number of commits visited
+   */
+  int seen() {
+    return this.seen;
+  }
+
+  /**
+   * Whether the last call to {@link #describe(ObjectId)} gave up after reaching the maximum depth.
+   *
+   * @return whether the maximum depth was reached
+   */
+  boolean exhausted() {
+    return this.exhausted;
+  }
+
+  private static Candidate minDepth(final List<Candidate> candidates) {
+    Candidate best = candidates.get(0);
+    for (final Candidate candidate : candidates) {
+      if (candidate.depth < best.depth) best = candidate; // ties go to the first found
+    }
+    return best;
+  }
+
+  private static boolean allFlagged(final PriorityQueue<Node> queue, final int flag) {
+    for (final Node node : queue) {
+      if ((node.flags & flag) == 0) return false;
+    }
+    return true;
+  }
+
+  private void enqueueParents(final Node commit, final PriorityQueue<Node> queue) throws IOException {
+    for (final Node parent : this.parents(commit)) {
+      if (!parent.seen) {
+        parent.seen = true;
+        parent.queuedAt = this.queued++;
+        queue.add(parent);
+      }
+      parent.flags |= commit.flags;
+    }
+  }
+
+  private String format(final Ref tag, final int depth, final ObjectId target) throws IOException {
+    try (final ObjectReader reader = this.repository.newObjectReader()) {
+      return Repository.shortenRefName(tag.getName()) + '-' + depth + "-g" + reader.abbreviate(target, ABBREVIATED_LENGTH).name();
+    }
+  }
+
+  // Prefer annotated tags, then the first by name
+  private static @Nullable Ref bestTag(final List<Ref> tags) {
+    if (tags.isEmpty()) return null;
+    for (final Ref tag : tags) {
+      if (tag.getPeeledObjectId() != null) return tag;
+    }
+    return tags.get(0);
+  }
+
+  private Node node(final ObjectId id) throws IOException {
+    final int position = this.graph.find(id);
+    if (position != CommitGraph.NOT_FOUND) {
+      return this.graphNode(position);
+    }
+
+    Node node = this.looseNodes.get(id);
+    if (node == null) {
+      if (this.walk == null) {
+        this.walk = new RevWalk(this.repository);
+        this.walk.setRetainBody(false);
+      }
+      final RevCommit commit = this.walk.parseCommit(id);
+      node = new Node(CommitGraph.NOT_FOUND, commit, commit.getCommitTime());
+      this.looseNodes.put(commit.copy(), node);
+    }
+    return node;
+  }
+
+  private Node graphNode(final int position) {
+    return this.graphNodes.computeIfAbsent(position, pos -> new Node(pos, null, this.graph.commitTime(pos)));
+  }
+
+  private List<Node> parents(final Node node) throws IOException {
+    final List<Node> parents = new ArrayList<>(2);
+    if (node.commit != null) {
+      for (final RevCommit parent : node.commit.getParents()) {
+        parents.add(this.node(parent));
+      }
+    } else {
+      for (final int parent : this.graph.parents(node.position)) {
+        parents.add(this.graphNode(parent));
+      }
+    }
+    return parents;
+  }
+
+  private final class Node {
+    final int position;
+    final @Nullable RevCommit commit;
+    final long time;
+    int flags;
+    boolean seen;
+    long queuedAt;
+
+    Node(final int position, final @Nullable RevCommit commit, final long time) {
+      this.position = position;
+      this.commit = commit;
+      this.time = time;
+    }
+
+    ObjectId id() {
+      return this.commit != null ? this.commit : GraphDescriber.this.graph.id(this.position);
+    }
+  }
+
+  private static final class Candidate {
+    final Ref tag;
+    final int flag;
+    int depth;
+
+    Candidate(final Ref tag, final int depth, final int flag) {
+      this.tag = tag;
+      this.depth = depth;
+      this.flag = flag;
+    }
+  }
+}
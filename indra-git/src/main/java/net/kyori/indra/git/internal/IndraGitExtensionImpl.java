@@ -28,21 +28,20 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import javax.inject.Inject;
+import net.kyori.indra.git.GitPerformance;
 import net.kyori.indra.git.IndraGitExtension;
 import net.kyori.indra.git.RepositoryValueSource;
 import net.kyori.mammoth.Configurable;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.api.errors.RefNotFoundException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevObject;
-import org.eclipse.jgit.revwalk.RevWalk;
 import org.gradle.api.Action;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
 import org.gradle.api.provider.ValueSourceSpec;
@@ -56,13 +55,28 @@ public class IndraGitExtensionImpl implements IndraGitExtension {
   private final File rootDir;
   private final File projectDir;
   private final String displayName;
+  private final Property<Integer> describeMaxDepth;
+  private final Property<String> shallowDescribeFallback;
+  private final GitPerformanceImpl performance;
+  private final Provider<RepositorySnapshot> snapshot;
 
   @Inject
-  public IndraGitExtensionImpl(final ProviderFactory providers, final File rootDir, final File projectDir, final String displayName) {
+  public IndraGitExtensionImpl(final ObjectFactory objects, final ProviderFactory providers, final File rootDir, final File projectDir, final String displayName) {
     this.rootDir = rootDir;
     this.providers = providers;
     this.projectDir = projectDir;
     this.displayName = displayName;
+    this.describeMaxDepth = objects.property(Integer.class);
+    this.shallowDescribeFallback = objects.property(String.class);
+    this.performance = objects.newInstance(GitPerformanceImpl.class);
+    // first one wins, so this only takes effect for the settings or root project
+    GitCache.getOrCreate(rootDir).windowCache(this.performance::windowCacheConfig);
+    GitCache.getOrCreate(rootDir).retention(this.performance::retention);
+    // one value source shared by every query, so the repository is only read once per build
+    this.snapshot = this.repositoryValue(QuerySnapshot.class, spec -> {
+      spec.getParameters().getDescribeMaxDepth().set(this.describeMaxDepth);
+      spec.getParameters().getShallowDescribeFallback().set(this.shallowDescribeFallback);
+    });
   }
 
   @Override
@@ -86,120 +100,92 @@ public class IndraGitExtensionImpl implements IndraGitExtension {
     });
   }
 
-  public static abstract class QueryTags extends RepositoryValueSource.Parameterless<List<? extends Ref>> {
+  /**
+   * A value source capturing every supported piece of repository state in one pass.
+   */
+  public static abstract class QuerySnapshot extends RepositoryValueSource<RepositorySnapshot, QuerySnapshot.Parameters> {
+    public interface Parameters extends RepositoryValueSource.Parameters {
+      Property<Integer> getDescribeMaxDepth();
+
+      Property<String> getShallowDescribeFallback();
+    }
+
     @Override
-    protected @Nullable List<? extends Ref> obtain(final @NotNull Git repository) {
-      try {
-        return repository.tagList().call();
-      } catch (final GitAPIException ex) {
-        LOGGER.error("Failed to query git for a list of tags:", ex);
-        return Collections.emptyList();
-      }
+    protected @Nullable RepositorySnapshot obtain(final @NotNull Git repository) {
+      final Parameters params = this.getParameters();
+      return RepositorySnapshot.capture(
+        repository,
+        params.getRootDir().get().getAsFile(),
+        params.getDescribeMaxDepth().getOrElse(Integer.MAX_VALUE),
+        params.getShallowDescribeFallback().getOrNull()
+      );
     }
   }
 
   @Override
   public @NotNull Provider<? extends List<? extends Ref>> tags() {
-    return this.repositoryValue(QueryTags.class).orElse(Collections.emptyList());
+    return this.snapshot.map(RepositorySnapshot::tags).orElse(Collections.emptyList());
   }
 
   public static @Nullable Ref headTag(final Git git) {
     try {
       final @Nullable Ref head = git.getRepository().findRef(Constants.HEAD);
-      if (head == null) return null;
-
-      final ObjectId headCommit = head.getLeaf().getObjectId();
+      if (head == null || head.getLeaf().getObjectId() == null) return null;
 
-      try (final RevWalk walk = new RevWalk(git.getRepository())) {
-        for (final Ref tag : git.tagList().call()) {
-          final RevObject parsed = walk.peel(walk.parseAny(tag.getObjectId()));
-          final ObjectId commitId = parsed.toObjectId();
-
-          if (ObjectId.isEqual(commitId, headCommit)) {
-            return tag;
-          }
-        }
+      final TagIndex index = GitCache.tagIndex(git.getRepository());
+      if (RepositorySnapshot.isShallow(git.getRepository())) {
+        final List<Ref> tags = index.lookupTagsAt(head.getLeaf().getObjectId());
+        return tags.isEmpty() ? null : tags.get(0);
       }
-    } catch (final IOException | GitAPIException ex) {
+      return index.firstTagAt(head.getLeaf().getObjectId());
+    } catch (final IOException ex) {
       LOGGER.error("Failed to resolve current HEAD tag:", ex);
     }
     return null;
   }
 
-  public static abstract class QueryHeadTag extends RepositoryValueSource.Parameterless<Ref> {
-    @Override
-    protected @Nullable Ref obtain(final @NotNull Git repository) {
-      return IndraGitExtensionImpl.headTag(repository);
-    }
+  @Override
+  public @NotNull Provider<Ref> headTag() {
+    return this.snapshot.map(RepositorySnapshot::headTag);
   }
 
   @Override
-  public @NotNull Provider<Ref> headTag() {
-    return this.repositoryValue(QueryHeadTag.class);
+  public @NotNull Property<Integer> describeMaxDepth() {
+    return this.describeMaxDepth;
   }
 
-  public static abstract class QueryDescribe extends RepositoryValueSource.Parameterless<String> {
-    @Override
-    protected @Nullable String obtain(final @NotNull Git repository) {
-      try {
-        return repository.describe().setTags(true).setLong(true).call();
-      } catch (final RefNotFoundException ex) {
-        // there is no HEAD when in a git repo without a commit
-        return null;
-      } catch (final GitAPIException ex) {
-        LOGGER.error("Failed to query git for a 'describe' result:", ex);
-        return null;
-      }
-    }
+  @Override
+  public @NotNull Property<String> shallowDescribeFallback() {
+    return this.shallowDescribeFallback;
   }
 
   @Override
-  public @NotNull Provider<String> describe() {
-    return this.repositoryValue(QueryDescribe.class);
+  public @NotNull GitPerformance performance() {
+    return this.performance;
   }
 
   @Override
-  public @NotNull Provider<String> branchName() {
-    return this.branch().map(branch -> Repository.shortenRefName(branch.getName()));
+  public void performance(final @NotNull Action<? super GitPerformance> action) {
+    Configurable.configure(this.performance, action);
   }
 
-  public static abstract class QueryBranch extends RepositoryValueSource.Parameterless<Ref> {
-    @Override
-    protected @Nullable Ref obtain(final @NotNull Git repository) {
-      try {
-        final @Nullable Ref ref = repository.getRepository().exactRef(Constants.HEAD);
-        if (ref == null || !ref.isSymbolic()) return null; // no HEAD, or detached HEAD
-
-        return ref.getTarget();
-      } catch(final IOException ex) {
-        LOGGER.error("Failed to query current branch name from git:", ex);
-        return null;
-      }
-    }
+  @Override
+  public @NotNull Provider<String> describe() {
+    return this.snapshot.map(RepositorySnapshot::describe);
   }
 
   @Override
-  public @NotNull Provider<Ref> branch() {
-    return this.repositoryValue(QueryBranch.class);
+  public @NotNull Provider<String> branchName() {
+    return this.branch().map(branch -> Repository.shortenRefName(branch.getName()));
   }
 
-  public static abstract class QueryCommit extends RepositoryValueSource.Parameterless<ObjectId> {
-    @Override
-    protected @Nullable ObjectId obtain(final @NotNull Git repository) {
-      try {
-        final @Nullable Ref head = repository.getRepository().exactRef(Constants.HEAD);
-        if (head == null) return null;
-
-        return head.getObjectId();
-      } catch (final IOException ex) {
-        LOGGER.error("Failed to query git for the current HEAD commit:", ex);
-        return null;
-      }
-    }
+  @Override
+  public @NotNull Provider<Ref> branch() {
+    return this.snapshot.map(RepositorySnapshot::branch);
   }
 
   @Override
   public @NotNull Provider<ObjectId> commit() {
-    return this.repositoryValue(QueryCommit.class);
+    return this.snapshot.map(RepositorySnapshot::commit);
   }
 }
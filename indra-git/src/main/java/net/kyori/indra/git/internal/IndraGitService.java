@@ -24,8 +24,16 @@
 package net.kyori.indra.git.internal;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
 import org.eclipse.jgit.api.Git;
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
 import org.gradle.api.services.BuildService;
 import org.gradle.api.services.BuildServiceParameters;
 import org.gradle.tooling.events.FinishEvent;
@@ -41,7 +49,10 @@ import org.jetbrains.annotations.Nullable;
 public abstract class IndraGitService implements BuildService<IndraGitService.Parameters>, AutoCloseable, OperationCompletionListener {
   public static final String SERVICE_NAME = "indraGitService";
 
+  private static final Logger LOGGER = Logging.getLogger(IndraGitService.class);
+
   private GitCache.GitProvider inner;
+  private volatile @Nullable File statisticsReport;
 
 
   public interface Parameters extends BuildServiceParameters {
@@ -53,10 +64,67 @@ public abstract class IndraGitService implements BuildService<IndraGitService.Pa
      * @return the base directory
      */
     DirectoryProperty getBaseDirectory();
+
+    /**
+     * Whether JGit should memory-map pack files.
+     *
+     * @return whether to memory-map pack files
+     * @see net.kyori.indra.git.GitPerformance#packedGitMmap()
+     */
+    Property<Boolean> getPackedGitMmap();
+
+    /**
+     * The maximum number of bytes of pack files JGit should cache.
+     *
+     * @return the pack window cache size
+     * @see net.kyori.indra.git.GitPerformance#packedGitLimit()
+     */
+    Property<Long> getPackedGitLimit();
+
+    /**
+     * The maximum number of bytes JGit should use to cache delta bases.
+     *
+     * @return the delta base cache size
+     * @see net.kyori.indra.git.GitPerformance#deltaBaseCacheLimit()
+     */
+    Property<Integer> getDeltaBaseCacheLimit();
+
+    /**
+     * The size in bytes above which JGit should stream objects.
+     *
+     * @return the stream threshold
+     * @see net.kyori.indra.git.GitPerformance#streamFileThreshold()
+     */
+    Property<Integer> getStreamFileThreshold();
+
+    /**
+     * How long a repository may go unused before it is closed.
+     *
+     * @return the idle timeout
+     * @see net.kyori.indra.git.GitPerformance#repositoryIdleTimeout()
+     */
+    Property<Duration> getRepositoryIdleTimeout();
+
+    /**
+     * The maximum number of repositories to keep open while they are not in use.
+     *
+     * @return the open repository limit
+     * @see net.kyori.indra.git.GitPerformance#maxOpenRepositories()
+     */
+    Property<Integer> getMaxOpenRepositories();
   }
 
   public IndraGitService() {
-    this.inner = GitCache.getOrCreate(this.getParameters().getBaseDirectory().get().getAsFile());
+    final Parameters params = this.getParameters();
+    this.inner = GitCache.getOrCreate(params.getBaseDirectory().get().getAsFile());
+    // when reusing the configuration cache, no extension has been created to provide these
+    this.inner.windowCache(() -> GitPerformanceImpl.windowCacheConfig(
+      params.getPackedGitMmap(),
+      params.getPackedGitLimit(),
+      params.getDeltaBaseCacheLimit(),
+      params.getStreamFileThreshold()
+    ));
+    this.inner.retention(() -> GitPerformanceImpl.retention(params.getRepositoryIdleTimeout(), params.getMaxOpenRepositories()));
   }
 
   /**
@@ -64,6 +132,9 @@ public abstract class IndraGitService implements BuildService<IndraGitService.Pa
    *
    * <p>If this project is not managed by git, this will return {@code null}.</p>
    *
+   * <p>No reference to the repository is held, so it may be closed from another thread once it has been idle for
+   * long enough, and must not be stored. Use {@link #open(File, String)} for anything more than a single query.</p>
+   *
    * @param projectDir the project directory to locate a git repo in
    * @param displayName the display name for the context being queried
    * @return the build's git repository.
@@ -73,9 +144,61 @@ public abstract class IndraGitService implements BuildService<IndraGitService.Pa
     return this.inner.git(projectDir, displayName);
   }
 
+  /**
+   * Acquire a handle to the git repository for this build, keeping it open until the handle is closed.
+   *
+   * <p>If this project is not managed by git, this will return {@code null}.</p>
+   *
+   * @param projectDir the project directory to locate a git repo in
+   * @param displayName the display name for the context being queried
+   * @return a handle to the build's git repository
+   * @since 4.0.0
+   */
+  public GitCache.@Nullable RepositoryHandle open(final File projectDir, final @NotNull String displayName) {
+    return this.inner.open(projectDir, displayName);
+  }
+
+
+  /**
+   * Get latency statistics for every git query made during this build.
+   *
+   * @return the statistics
+   * @since 4.0.0
+   */
+  public @NotNull GitMetrics metrics() {
+    return this.inner.metrics();
+  }
+
+  /**
+   * Write a JSON report of query statistics to the provided file once the build has finished.
+   *
+   * <p>The report is written immediately, and again once when the build finishes, to include later queries.</p>
+   *
+   * @param report the file to write the report to
+   * @since 4.0.0
+   */
+  public void reportStatistics(final @NotNull File report) {
+    this.statisticsReport = report;
+    this.writeStatistics();
+  }
+
+  private synchronized void writeStatistics() {
+    final @Nullable File report = this.statisticsReport;
+    if (report == null) return;
+
+    try {
+      Files.createDirectories(report.toPath().getParent());
+      try (final Writer writer = Files.newBufferedWriter(report.toPath(), StandardCharsets.UTF_8)) {
+        this.inner.metrics().writeJson(writer);
+      }
+    } catch (final IOException ex) {
+      LOGGER.warn("indra-git: Failed to write git statistics report to {}", report, ex);
+    }
+  }
 
   @Override
   public void close() {
+    this.writeStatistics();
     GitCache.close(this.inner);
   }
 
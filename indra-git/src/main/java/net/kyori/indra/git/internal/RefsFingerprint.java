@@ -0,0 +1,182 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2024 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.git.internal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.eclipse.jgit.lib.Constants;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A cheap summary of the on-disk state of part of a ref database.
+ *
+ * <p>This records the size and modification time of {@code packed-refs} (and optionally {@code HEAD}), and the
+ * modification times of every directory in the selected loose ref trees. Loose refs are written by renaming a
+ * lock file into place, so any created, updated, or deleted loose ref will touch the modification time of its
+ * containing directory without us having to stat each ref.</p>
+ */
+final class RefsFingerprint {
+  private static final String PACKED_REFS = "packed-refs";
+  private static final String COMMON_DIR = "commondir";
+  // modifications this close to when a fingerprint was taken may not be visible in file timestamps yet
+  private static final long RACY_INTERVAL_MILLIS = 2_500;
+
+  private final long[] values;
+  private final long takenAt;
+
+  private RefsFingerprint(final long[] values, final long takenAt) {
+    this.values = values;
+    this.takenAt = takenAt;
+  }
+
+  /**
+   * Fingerprint the tags of a repository.
+   *
+   * @param gitDir the repository's git directory
+   * @return a fingerprint of {@code packed-refs} and {@code refs/tags}
+   */
+  static RefsFingerprint tags(final File gitDir) {
+    final File commonDir = commonDirectory(gitDir);
+    final Builder builder = new Builder();
+    builder.file(new File(commonDir, PACKED_REFS));
+    builder.directoryTree(new File(commonDir, Constants.R_TAGS));
+    return builder.build();
+  }
+
+  /**
+   * Fingerprint the state of {@code HEAD}, local branches, and tags of a repository.
+   *
+   * @param gitDir the repository's git directory
+   * @return a fingerprint of {@code HEAD}, {@code packed-refs}, {@code refs/heads}, and {@code refs/tags}
+   */
+  static RefsFingerprint headAndTags(final File gitDir) {
+    final File commonDir = commonDirectory(gitDir);
+    final Builder builder = new Builder();
+    builder.file(new File(gitDir, Constants.HEAD));
+    builder.file(new File(commonDir, PACKED_REFS));
+    builder.directoryTree(new File(commonDir, Constants.R_HEADS));
+    builder.directoryTree(new File(commonDir, Constants.R_TAGS));
+    return builder.build();
+  }
+
+  static RefsFingerprint read(final DataInput input) throws IOException {
+    final long takenAt = input.readLong();
+    final long[] values = new long[input.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = input.readLong();
+    }
+    return new RefsFingerprint(values, takenAt);
+  }
+
+  void write(final DataOutput output) throws IOException {
+    output.writeLong(this.takenAt);
+    output.writeInt(this.values.length);
+    for (final long value : this.values) {
+      output.writeLong(value);
+    }
+  }
+
+  /**
+   * Get whether this fingerprint was taken long enough after the last change it saw to be trusted.
+   *
+   * @return whether this fingerprint is stable
+   */
+  boolean isStable() {
+    long lastModified = 0;
+    for (final long value : this.values) {
+      lastModified = Math.max(lastModified, value);
+    }
+    return this.takenAt - lastModified > RACY_INTERVAL_MILLIS;
+  }
+
+  /**
+   * Get whether this fingerprint can still be trusted to describe the current state.
+   *
+   * @param current a freshly taken fingerprint
+   * @return whether the state described by both fingerprints is the same
+   */
+  boolean matches(final RefsFingerprint current) {
+    return this.isStable() && Arrays.equals(this.values, current.values);
+  }
+
+  /**
+   * Resolve the directory holding state shared between all worktrees of a repository.
+   *
+   * <p>Linked worktrees keep their refs and objects in the shared repository directory.</p>
+   *
+   * @param gitDir the git directory
+   * @return the common directory
+   */
+  static File commonDirectory(final File gitDir) {
+    final File commonDir = new File(gitDir, COMMON_DIR);
+    if (commonDir.isFile()) {
+      try {
+        final String path = new String(Files.readAllBytes(commonDir.toPath()), StandardCharsets.UTF_8).trim();
+        final File resolved = new File(path);
+        return resolved.isAbsolute() ? resolved : new File(gitDir, path);
+      } catch (final IOException ex) {
+        // fall through, use the git directory
+      }
+    }
+    return gitDir;
+  }
+
+  private static final class Builder {
+    private long[] values = new long[8];
+    private int size;
+    private final long takenAt = System.currentTimeMillis();
+
+    void file(final File file) {
+      this.add(file.lastModified());
+      this.add(file.length());
+    }
+
+    void directoryTree(final File directory) {
+      this.add(directory.lastModified());
+      final File @Nullable [] children = directory.listFiles(File::isDirectory);
+      if (children == null) return;
+
+      Arrays.sort(children);
+      for (final File child : children) {
+        this.directoryTree(child);
+      }
+    }
+
+    private void add(final long value) {
+      if (this.size == this.values.length) {
+        this.values = Arrays.copyOf(this.values, this.size * 2);
+      }
+      this.values[this.size++] = value;
+    }
+
+    RefsFingerprint build() {
+      return new RefsFingerprint(Arrays.copyOf(this.values, this.size), this.takenAt);
+    }
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2024 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.git.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.RefNotFoundException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The state of a repository's {@code HEAD} and tags, captured at one point in time.
+ *
+ * <p>Every git-derived provider captures all values together in a single read of the ref database, so that resolving HEAD
+ * and indexing tags is only done once per build.</p>
+ */
+public final class RepositorySnapshot {
+  private static final Logger LOGGER = Logging.getLogger(RepositorySnapshot.class);
+  private static final String SHALLOW = "shallow";
+
+  private final @Nullable Ref branch;
+  private final @Nullable ObjectId commit;
+  private final @Nullable Ref headTag;
+  private final @Nullable String describe;
+  private final List<? extends Ref> tags;
+
+  RepositorySnapshot(final @Nullable Ref branch, final @Nullable ObjectId commit, final @Nullable Ref headTag, final @Nullable String describe, final List<? extends Ref> tags) {
+    this.branch = branch;
+    this.commit = commit;
+    this.headTag = headTag;
+    this.describe = describe;
+    this.tags = tags;
+  }
+
+  /**
+   * Capture the current state of a repository.
+   *
+   * @param git the repository
+   * @return a new snapshot
+   */
+  public static @NotNull RepositorySnapshot capture(final @NotNull Git git) {
+    return capture(git, null, Integer.MAX_VALUE, null);
+  }
+
+  /**
+   * Capture the current state of a repository, reusing a persisted snapshot if the ref database is unchanged.
+   *
+   * @param git the repository
+   * @param rootDir the root directory of the build, to persist snapshots within, or {@code null} to not persist
+   * @param describeMaxDepth the maximum number of commits to walk when computing a describe string
+   * @param shallowDescribeFallback the describe string to use in a shallow clone when {@code HEAD} is not tagged
+   * @return a new snapshot
+   */
+  public static @NotNull RepositorySnapshot capture(final @NotNull Git git, final @Nullable File rootDir, final int describeMaxDepth, final @Nullable String shallowDescribeFallback) {
+    // shallow clones never walk history, so there is nothing worth persisting
+    if (isShallow(git.getRepository())) return computeShallow(git, shallowDescribeFallback);
+    if (rootDir == null) return compute(git, describeMaxDepth);
+
+    final SnapshotStore store = new SnapshotStore(rootDir, git.getRepository(), describeMaxDepth);
+    final RefsFingerprint fingerprint = RefsFingerprint.headAndTags(git.getRepository().getDirectory());
+    final @Nullable RepositorySnapshot existing = store.load(git.getRepository(), fingerprint);
+    if (existing != null) return existing;
+
+    final RepositorySnapshot computed = compute(git, describeMaxDepth);
+    store.store(fingerprint, computed);
+    return computed;
+  }
+
+  private static RepositorySnapshot compute(final Git git, final int describeMaxDepth) {
+    final Repository repository = git.getRepository();
+    final @Nullable Ref head;
+    try {
+      head = repository.exactRef(Constants.HEAD);
+    } catch (final IOException ex) {
+      LOGGER.error("Failed to query git for the current HEAD:", ex);
+      return new RepositorySnapshot(null, null, null, null, Collections.emptyList());
+    }
+
+    final @Nullable Ref branch = head == null || !head.isSymbolic() ? null : head.getTarget(); // no HEAD, or detached HEAD
+    final @Nullable ObjectId commit = head == null ? null : head.getObjectId();
+
+    final TagIndex index = GitCache.tagIndex(repository);
+    List<? extends Ref> tags = Collections.emptyList();
+    List<Ref> headTags = Collections.emptyList();
+    try {
+      tags = index.tags();
+      if (commit != null) {
+        headTags = index.tagsAt(commit);
+      }
+    } catch (final IOException ex) {
+      LOGGER.error("Failed to query git for a list of tags:", ex);
+    }
+
+    final @Nullable Ref headTag = headTags.isEmpty() ? null : headTags.get(0);
+    final @Nullable String describe = commit == null ? null : describe(git, index, commit, headTags, describeMaxDepth);
+    return new RepositorySnapshot(branch, commit, headTag, describe, tags);
+  }
+
+  /**
+   * Get whether a repository is a shallow clone, missing some of its history.
+   *
+   * @param repository the repository
+   * @return whether the repository is shallow
+   */
+  static boolean isShallow(final @NotNull Repository repository) {
+    return new File(RefsFingerprint.commonDirectory(repository.getDirectory()), SHALLOW).isFile();
+  }
+
+  private static RepositorySnapshot computeShallow(final Git git, final @Nullable String describeFallback) {
+    final Repository repository = git.getRepository();
+    final @Nullable Ref head;
+    try {
+      head = repository.exactRef(Constants.HEAD);
+    } catch (final IOException ex) {
+      LOGGER.error("Failed to query git for the current HEAD:", ex);
+      return new RepositorySnapshot(null, null, null, null, Collections.emptyList());
+    }
+
+    final @Nullable Ref branch = head == null || !head.isSymbolic() ? null : head.getTarget(); // no HEAD, or detached HEAD
+    final @Nullable ObjectId commit = head == null ? null : head.getObjectId();
+
+    // Most tags will point outside of the fetched history, so look up only what HEAD needs instead of indexing every tag
+    final TagIndex index = GitCache.tagIndex(repository);
+    List<? extends Ref> tags = Collections.emptyList();
+    List<Ref> headTags = Collections.emptyList();
+    try {
+      tags = index.lookupTags();
+      if (commit != null) {
+        headTags = index.lookupTagsAt(commit);
+      }
+    } catch (final IOException ex) {
+      LOGGER.error("Failed to query git for a list of tags:", ex);
+    }
+
+    final @Nullable Ref headTag = headTags.isEmpty() ? null : headTags.get(0);
+    @Nullable String describe = null;
+    if (commit != null) {
+      final @Nullable Ref describeTag = preferAnnotated(headTags);
+      describe = describeTag == null ? null : describeExact(git, describeTag, commit);
+      if (describe == null) describe = describeFallback;
+    }
+    return new RepositorySnapshot(branch, commit, headTag, describe, tags);
+  }
+
+  private static @Nullable Ref preferAnnotated(final List<Ref> tags) {
+    for (final Ref tag : tags) {
+      if (tag.getPeeledObjectId() != null) return tag;
+    }
+    return tags.isEmpty() ? null : tags.get(0);
+  }
+
+  private static @Nullable String describeExact(final Git git, final Ref tag, final ObjectId commit) {
+    try (final ObjectReader reader = git.getRepository().newObjectReader()) {
+      return Repository.shortenRefName(tag.getName()) + "-0-g" + reader.abbreviate(commit).name();
+    } catch (final IOException ex) {
+      LOGGER.debug("Failed to abbreviate HEAD commit", ex);
+      return null;
+    }
+  }
+
+  private static @Nullable String describe(final Git git, final TagIndex index, final ObjectId commit, final List<Ref> headTags, final int maxDepth) {
+    // When exactly one tag points at HEAD, there is no history to walk
+    if (headTags.size() == 1) {
+      final @Nullable String exact = describeExact(git, headTags.get(0), commit);
+      if (exact != null) return exact;
+    }
+
+    try {
+      final @Nullable CommitGraph graph = CommitGraph.open(git.getRepository().getDirectory());
+      if (graph != null) {
+        final GraphDescriber describer = new GraphDescriber(git.getRepository(), graph, index, maxDepth);
+        final @Nullable String describe = describer.describe(commit);
+        if (describer.exhausted()) {
+          LOGGER.info("indra-git: No describe result, the nearest tag could not be determined within {} commits of HEAD", maxDepth);
+        }
+        return describe;
+      }
+    } catch (final IOException | RuntimeException ex) {
+      LOGGER.warn("Failed to describe HEAD using the commit graph, falling back to a full history walk", ex);
+    }
+
+    try {
+      return git.describe().setTags(true).setLong(true).call();
+    } catch (final RefNotFoundException ex) {
+      // there is no HEAD when in a git repo without a commit
+      return null;
+    } catch (final GitAPIException ex) {
+      LOGGER.error("Failed to query git for a 'describe' result:", ex);
+      return null;
+    }
+  }
+
+  /**
+   * The checked-out branch.
+   *
+   * @return the branch, or {@code null} if {@code HEAD} is detached
+   */
+  public @Nullable Ref branch() {
+    return this.branch;
+  }
+
+  /**
+   * The commit checked out as {@code HEAD}.
+   *
+   * @return the commit id, or {@code null} if there has been no initial commit
+   */
+  public @Nullable ObjectId commit() {
+    return this.commit;
+  }
+
+  /**
+   * The first tag, by name, pointing at {@code HEAD}.
+   *
+   * @return the tag, or {@code null} if {@code HEAD} is not tagged
+   */
+  public @Nullable Ref headTag() {
+    return this.headTag;
+  }
+
+  /**
+   * The {@code git describe --tags --long} result for {@code HEAD}.
+   *
+   * @return the describe string, or {@code null} if no tag is reachable from {@code HEAD}
+   */
+  public @Nullable String describe() {
+    return this.describe;
+  }
+
+  /**
+   * All tags in the repository.
+   *
+   * @return the tags, sorted by name
+   */
+  public @NotNull List<? extends Ref> tags() {
+    return this.tags;
+  }
+
+  // Refs do not implement equals, but configuration cache fingerprinting compares snapshots by value
+
+  @Override
+  public boolean equals(final @Nullable Object other) {
+    if (this == other) return true;
+    if (!(other instanceof RepositorySnapshot)) return false;
+    final RepositorySnapshot that = (RepositorySnapshot) other;
+    if (this.tags.size() != that.tags.size()) return false;
+    for (int i = 0; i < this.tags.size(); i++) {
+      if (!refEquals(this.tags.get(i), that.tags.get(i))) return false;
+    }
+    return refEquals(this.branch, that.branch)
+      && Objects.equals(this.commit, that.commit)
+      && refEquals(this.headTag, that.headTag)
+      && Objects.equals(this.describe, that.describe);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.branch == null ? null : this.branch.getName(), this.commit, this.headTag == null ? null : this.headTag.getName(), this.describe, this.tags.size());
+  }
+
+  private static boolean refEquals(final @Nullable Ref a, final @Nullable Ref b) {
+    if (a == b) return true;
+    if (a == null || b == null) return false;
+    return a.getName().equals(b.getName())
+      && Objects.equals(a.getObjectId(), b.getObjectId());
+  }
+}
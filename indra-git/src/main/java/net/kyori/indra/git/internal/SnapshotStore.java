@@ -0,0 +1,173 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2024 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.git.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdRef;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A persistent store of repository snapshots, so new daemons do not have to recompute values from the object database.
+ *
+ * <p>Entries are keyed by a {@link RefsFingerprint} of {@code HEAD}, local branches, and tags.
+ * Only entries whose fingerprint is stable are written.</p>
+ */
+final class SnapshotStore {
+  private static final Logger LOGGER = Logging.getLogger(SnapshotStore.class);
+  private static final String DIRECTORY = ".gradle/indra-git";
+  private static final int MAGIC = 0x49474954; // IGIT
+  private static final int FORMAT_VERSION = 1;
+
+  private final Path file;
+  private final String gitDir;
+  private final int describeMaxDepth;
+
+  SnapshotStore(final @NotNull File rootDir, final @NotNull Repository repository, final int describeMaxDepth) {
+    this.gitDir = repository.getDirectory().getAbsolutePath();
+    this.describeMaxDepth = describeMaxDepth;
+    final String key = UUID.nameUUIDFromBytes(this.gitDir.getBytes(StandardCharsets.UTF_8)).toString();
+    this.file = new File(rootDir, DIRECTORY).toPath().resolve(key + ".bin");
+  }
+
+  /**
+   * Load a snapshot, if one was stored for the same ref state.
+   *
+   * @param repository the repository to read tags from
+   * @param current the current fingerprint
+   * @return the stored snapshot, or {@code null} if none is present or it is outdated
+   */
+  @Nullable RepositorySnapshot load(final @NotNull Repository repository, final @NotNull RefsFingerprint current) {
+    try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(this.gitDir) || in.readInt() != this.describeMaxDepth) return null;
+      if (!RefsFingerprint.read(in).matches(current)) return null;
+
+      final @Nullable ObjectId commit = readId(in);
+      final @Nullable Ref branch = in.readBoolean() ? readRef(in) : null;
+      final @Nullable Ref headTag = in.readBoolean() ? readRef(in) : null;
+      final @Nullable String describe = in.readBoolean() ? in.readUTF() : null;
+
+      // Listing tags only reads the ref database, never object storage
+      final List<Ref> tags = new ArrayList<>(repository.getRefDatabase().getRefsByPrefix(Constants.R_TAGS));
+      tags.sort((a, b) -> a.getName().compareTo(b.getName()));
+      LOGGER.debug("indra-git: Loaded repository snapshot for {} from {}", this.gitDir, this.file);
+      return new RepositorySnapshot(branch, commit, headTag, describe, tags);
+    } catch (final NoSuchFileException ex) {
+      return null;
+    } catch (final IOException ex) {
+      LOGGER.debug("indra-git: Failed to read persisted repository snapshot from {}", this.file, ex);
+      return null;
+    }
+  }
+
+  /**
+   * Store a snapshot, if its fingerprint is stable.
+   *
+   * @param fingerprint the fingerprint taken before the snapshot was captured
+   * @param snapshot the snapshot
+   */
+  void store(final @NotNull RefsFingerprint fingerprint, final @NotNull RepositorySnapshot snapshot) {
+    if (!fingerprint.isStable()) return;
+
+    try {
+      Files.createDirectories(this.file.getParent());
+      final Path temp = Files.createTempFile(this.file.getParent(), "snapshot", ".tmp");
+      try {
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+          out.writeInt(MAGIC);
+          out.writeInt(FORMAT_VERSION);
+          out.writeUTF(this.gitDir);
+          out.writeInt(this.describeMaxDepth);
+          fingerprint.write(out);
+          writeId(out, snapshot.commit());
+          writeRef(out, snapshot.branch());
+          writeRef(out, snapshot.headTag());
+          out.writeBoolean(snapshot.describe() != null);
+          if (snapshot.describe() != null) {
+            out.writeUTF(snapshot.describe());
+          }
+        }
+        Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (final IOException ex) {
+      LOGGER.debug("indra-git: Failed to persist repository snapshot to {}", this.file, ex);
+    }
+  }
+
+  private static void writeId(final DataOutput out, final @Nullable ObjectId id) throws IOException {
+    out.writeBoolean(id != null);
+    if (id != null) {
+      out.writeUTF(id.name());
+    }
+  }
+
+  private static @Nullable ObjectId readId(final DataInput in) throws IOException {
+    return in.readBoolean() ? ObjectId.fromString(in.readUTF()) : null;
+  }
+
+  private static void writeRef(final DataOutput out, final @Nullable Ref ref) throws IOException {
+    out.writeBoolean(ref != null);
+    if (ref != null) {
+      out.writeUTF(ref.getName());
+      writeId(out, ref.getObjectId());
+      writeId(out, ref.getPeeledObjectId());
+    }
+  }
+
+  private static Ref readRef(final DataInput in) throws IOException {
+    final String name = in.readUTF();
+    final @Nullable ObjectId id = readId(in);
+    final @Nullable ObjectId peeled = readId(in);
+    if (id == null) {
+      return new ObjectIdRef.Unpeeled(Ref.Storage.NEW, name, null);
+    } else if (peeled != null) {
+      return new ObjectIdRef.PeeledTag(Ref.Storage.LOOSE, name, id, peeled);
+    } else {
+      return new ObjectIdRef.PeeledNonTag(Ref.Storage.LOOSE, name, id);
+    }
+  }
+}
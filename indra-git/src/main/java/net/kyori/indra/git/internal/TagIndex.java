@@ -0,0 +1,183 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2024 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.git.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An index of tags in a repository, keyed by the commit each tag peels to.
+ *
+ * <p>The index is built lazily, and only rebuilt once the state of the {@code packed-refs} file
+ * or the loose {@code refs/tags} directory tree has changed.</p>
+ */
+final class TagIndex {
+  private static final Comparator<Ref> BY_NAME = Comparator.comparing(Ref::getName); // match the ordering of `git tag -l`
+
+  private final Repository repository;
+  private final File gitDir;
+  private @Nullable Snapshot snapshot;
+
+  TagIndex(final @NotNull Repository repository) {
+    this.repository = repository;
+    this.gitDir = repository.getDirectory();
+  }
+
+  /**
+   * Get every tag in the repository.
+   *
+   * @return the tags, sorted by name
+   * @throws IOException if the ref database could not be read
+   */
+  @NotNull List<Ref> tags() throws IOException {
+    return this.snapshot().tags;
+  }
+
+  /**
+   * Get all tags that peel to the provided commit.
+   *
+   * @param commit the commit id
+   * @return the tags pointing at the commit, sorted by name
+   * @throws IOException if the ref database could not be read
+   */
+  @NotNull List<Ref> tagsAt(final @NotNull AnyObjectId commit) throws IOException {
+    final List<Ref> tags = this.snapshot().tagsByCommit.get(commit);
+    return tags == null ? Collections.emptyList() : tags;
+  }
+
+  /**
+   * Get the number of distinct objects that tags peel to.
+   *
+   * @return the number of tagged objects
+   * @throws IOException if the ref database could not be read
+   */
+  int taggedCommitCount() throws IOException {
+    return this.snapshot().tagsByCommit.size();
+  }
+
+  /**
+   * Get the first tag, by name, that peels to the provided commit.
+   *
+   * @param commit the commit id
+   * @return the tag, or {@code null} if no tag points at this commit
+   * @throws IOException if the ref database could not be read
+   */
+  @Nullable Ref firstTagAt(final @NotNull AnyObjectId commit) throws IOException {
+    final List<Ref> tags = this.tagsAt(commit);
+    return tags.isEmpty() ? null : tags.get(0);
+  }
+
+  /**
+   * Get all tags that point at the provided commit, without building the index.
+   *
+   * <p>Tags are compared against the commit directly, and only tags that may be annotated tags whose
+   * objects are present will be peeled. This suits shallow clones, where most tag objects and their
+   * targets were never fetched.</p>
+   *
+   * @param commit the commit id
+   * @return the tags pointing at the commit, sorted by name
+   * @throws IOException if the ref database could not be read
+   */
+  @NotNull List<Ref> lookupTagsAt(final @NotNull AnyObjectId commit) throws IOException {
+    final RefDatabase refs = this.repository.getRefDatabase();
+    final List<Ref> matching = new ArrayList<>(1);
+    for (Ref tag : refs.getRefsByPrefix(Constants.R_TAGS)) {
+      final @Nullable ObjectId id = tag.getObjectId();
+      if (id == null) continue; // unborn symbolic ref
+
+      if (!tag.isPeeled() && !id.equals(commit) && this.repository.getObjectDatabase().has(id)) {
+        tag = refs.peel(tag);
+      }
+      if (id.equals(commit) || commit.equals(tag.getPeeledObjectId())) {
+        matching.add(tag);
+      }
+    }
+    matching.sort(BY_NAME);
+    return matching;
+  }
+
+  /**
+   * Get every tag in the repository, without building the index.
+   *
+   * @return the tags, sorted by name and not peeled
+   * @throws IOException if the ref database could not be read
+   */
+  @NotNull List<Ref> lookupTags() throws IOException {
+    final List<Ref> tags = new ArrayList<>(this.repository.getRefDatabase().getRefsByPrefix(Constants.R_TAGS));
+    tags.sort(BY_NAME);
+    return Collections.unmodifiableList(tags);
+  }
+
+  private synchronized Snapshot snapshot() throws IOException {
+    final RefsFingerprint current = RefsFingerprint.tags(this.gitDir);
+    if (this.snapshot == null || !this.snapshot.fingerprint.matches(current)) {
+      this.snapshot = this.index(current);
+    }
+    return this.snapshot;
+  }
+
+  private Snapshot index(final RefsFingerprint fingerprint) throws IOException {
+    final RefDatabase refs = this.repository.getRefDatabase();
+    final List<Ref> tags = new ArrayList<>(refs.getRefsByPrefix(Constants.R_TAGS));
+    tags.sort(BY_NAME);
+
+    final Map<ObjectId, List<Ref>> byCommit = new HashMap<>();
+    for (Ref tag : tags) {
+      if (tag.getObjectId() == null) continue; // unborn symbolic ref
+
+      if (!tag.isPeeled()) {
+        tag = refs.peel(tag);
+      }
+      final ObjectId target = tag.getPeeledObjectId() != null ? tag.getPeeledObjectId() : tag.getObjectId();
+      byCommit.computeIfAbsent(target, $ -> new ArrayList<>(1)).add(tag);
+    }
+    return new Snapshot(fingerprint, Collections.unmodifiableList(tags), byCommit);
+  }
+
+  private static final class Snapshot {
+    final RefsFingerprint fingerprint;
+    final List<Ref> tags;
+    final Map<ObjectId, List<Ref>> tagsByCommit;
+
+    Snapshot(final RefsFingerprint fingerprint, final List<Ref> tags, final Map<ObjectId, List<Ref>> tagsByCommit) {
+      this.fingerprint = fingerprint;
+      this.tags = tags;
+      this.tagsByCommit = tagsByCommit;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2024 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.git.task;
+
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Report how long git queries took over the course of a build.
+ *
+ * <p>The report is a JSON document holding the count, total latency, and maximum latency of each type of query. Since
+ * queries may continue to be made after this task runs, the report is written again when the build finishes.</p>
+ *
+ * @since 4.0.0
+ */
+public abstract class GitStatistics extends RepositoryTask {
+  /**
+   * The file to write the JSON report to.
+   *
+   * @return the report file
+   * @since 4.0.0
+   */
+  @OutputFile
+  public abstract RegularFileProperty getReportFile();
+
+  public GitStatistics() {
+    this.getReportFile().convention(this.getProject().getLayout().getBuildDirectory().file("reports/indra-git/statistics.json"));
+    this.doNotTrackState("Statistics cover the whole build, and are only complete once it finishes");
+  }
+
+  /**
+   * Perform the task action.
+   *
+   * @since 4.0.0
+   */
+  @TaskAction
+  public void report() {
+    this.getGit().get().reportStatistics(this.getReportFile().get().getAsFile());
+  }
+}
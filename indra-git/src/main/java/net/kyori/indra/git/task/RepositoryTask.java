@@ -23,6 +23,7 @@
  */
 package net.kyori.indra.git.task;
 
+import net.kyori.indra.git.RepositoryHandle;
 import net.kyori.indra.git.internal.IndraGitService;
 import org.eclipse.jgit.api.Git;
 import org.gradle.api.DefaultTask;
@@ -58,10 +59,24 @@ public abstract class RepositoryTask extends DefaultTask {
   /**
    * Get the actual repo.
    *
+   * <p>No reference to the repository is held, so it may be closed from another thread if it goes unused for long
+   * enough. The result must not be stored. Tasks that use the repository for more than a single query should hold a
+   * handle from {@link #openRepo()} instead.</p>
+   *
    * @return the repo
    * @since 4.0.0
    */
   protected @Nullable Git repo() {
     return this.getGit().get().git(this.getProjectDirectory().get().getAsFile(), this.getProjectDisplayName().get());
   }
+
+  /**
+   * Acquire a handle to the actual repo, keeping it open until the handle is closed.
+   *
+   * @return a handle to the repo, or {@code null} if this project is not in a git repository
+   * @since 4.0.0
+   */
+  protected @Nullable RepositoryHandle openRepo() {
+    return this.getGit().get().open(this.getProjectDirectory().get().getAsFile(), this.getProjectDisplayName().get());
+  }
 }
@@ -23,10 +23,30 @@
  */
 package net.kyori.indra.git.task;
 
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.Status;
-import org.eclipse.jgit.api.errors.GitAPIException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import net.kyori.indra.git.RepositoryHandle;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.gradle.api.GradleException;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.language.base.plugins.LifecycleBasePlugin;
 import org.jetbrains.annotations.Nullable;
@@ -37,38 +57,169 @@ import org.jetbrains.annotations.Nullable;
  * <p>This prevents accidentally publishing content that does not match the
  * published source.</p>
  *
+ * <p>Only files within the project directory are checked. Files are compared against
+ * the index by their recorded size and modification time, and only those that differ
+ * are read to compare contents.</p>
+ *
  * @since 2.0.0
  */
 public abstract class RequireClean extends RepositoryTask {
 
   public RequireClean() {
     this.setGroup(LifecycleBasePlugin.VERIFICATION_GROUP);
+    this.getParallelism().convention(1);
   }
 
+  /**
+   * The number of threads to spread the working tree scan across.
+   *
+   * <p>When greater than one, the top-level entries of the project directory are
+   * partitioned between threads. This is only worthwhile for very large working trees.</p>
+   *
+   * @return the parallelism property
+   * @since 4.0.0
+   */
+  @Internal
+  public abstract Property<Integer> getParallelism();
+
   @TaskAction
   public void check() {
-    final @Nullable Git git = this.repo();
-    if (git == null) return;
+    try (final @Nullable RepositoryHandle handle = this.openRepo()) {
+      if (handle == null) return;
 
-    try {
-      final Status status = git.status().call();
-      if (!status.isClean()) {
+      final Repository repo = handle.git().getRepository();
+      final @Nullable String scope = relativePath(repo.getWorkTree(), this.getProjectDirectory().get().getAsFile());
+      final Set<String> changes = new TreeSet<>();
+      final int parallelism = this.getParallelism().get();
+      if (parallelism > 1) {
+        scanParallel(repo, scope, parallelism, changes);
+      } else {
+        scan(repo, scope == null ? null : PathFilter.create(scope), changes);
+      }
+
+      if (!changes.isEmpty()) {
         final StringBuilder message = new StringBuilder("Source root must be clean! Make sure your changes are committed. Changed files:");
-        for(final String changed : status.getUncommittedChanges()) {
+        for (final String changed : changes) {
           message.append(System.lineSeparator())
             .append("- ")
             .append(changed);
         }
-        for(final String untracked : status.getUntracked()) {
-          message.append(System.lineSeparator())
-            .append("- ")
-            .append(untracked);
-        }
 
         throw new GradleException(message.toString());
       }
-    } catch (final GitAPIException ex) {
+    } catch (final IOException ex) {
       this.getLogger().error("Failed to query clean status of current project repository", ex);
     }
   }
+
+  private static void scanParallel(final Repository repo, final @Nullable String scope, final int parallelism, final Set<String> changes) throws IOException {
+    final File scopeDir = scope == null ? repo.getWorkTree() : new File(repo.getWorkTree(), scope);
+    final String @Nullable [] entries = scopeDir.list((dir, name) -> !name.equals(Constants.DOT_GIT));
+    if (entries == null || entries.length < 2) {
+      scan(repo, scope == null ? null : PathFilter.create(scope), changes);
+      return;
+    }
+    Arrays.sort(entries);
+
+    // Split top-level entries round-robin, then catch anything not on disk (deleted files) in a final pass
+    final List<List<String>> partitions = new ArrayList<>();
+    for (int i = 0; i < Math.min(parallelism, entries.length); i++) {
+      partitions.add(new ArrayList<>());
+    }
+    for (int i = 0; i < entries.length; i++) {
+      partitions.get(i % partitions.size()).add(scope == null ? entries[i] : scope + '/' + entries[i]);
+    }
+
+    final List<TreeFilter> filters = new ArrayList<>();
+    for (final List<String> partition : partitions) {
+      filters.add(PathFilterGroup.createFromStrings(partition));
+    }
+    filters.add(new UnlistedEntryFilter(scope == null ? "" : scope + '/', new HashSet<>(Arrays.asList(entries))));
+
+    final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, filters.size()));
+    try {
+      final List<Future<Set<String>>> results = new ArrayList<>();
+      for (final TreeFilter filter : filters) {
+        results.add(executor.submit(() -> {
+          final Set<String> found = new TreeSet<>();
+          scan(repo, filter, found);
+          return found;
+        }));
+      }
+      for (final Future<Set<String>> result : results) {
+        changes.addAll(result.get());
+      }
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new GradleException("Interrupted while checking repository status", ex);
+    } catch (final ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new GradleException("Failed to check repository status", ex.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void scan(final Repository repo, final @Nullable TreeFilter filter, final Set<String> changes) throws IOException {
+    final IndexDiff diff = new IndexDiff(repo, Constants.HEAD, new FileTreeIterator(repo));
+    if (filter != null) {
+      diff.setFilter(filter);
+    }
+    diff.diff();
+
+    changes.addAll(diff.getAdded());
+    changes.addAll(diff.getChanged());
+    changes.addAll(diff.getRemoved());
+    changes.addAll(diff.getMissing());
+    changes.addAll(diff.getModified());
+    changes.addAll(diff.getConflicting());
+    changes.addAll(diff.getUntracked());
+  }
+
+  /**
+   * Matches entries directly within a directory that were not seen when listing it.
+   */
+  private static final class UnlistedEntryFilter extends TreeFilter {
+    private final String prefix;
+    private final Set<String> listed;
+
+    UnlistedEntryFilter(final String prefix, final Set<String> listed) {
+      this.prefix = prefix;
+      this.listed = listed;
+    }
+
+    @Override
+    public boolean include(final TreeWalk walker) {
+      final String path = walker.getPathString();
+      if (path.length() < this.prefix.length()) {
+        return this.prefix.startsWith(path + '/'); // a parent of the scanned directory
+      } else if (!path.startsWith(this.prefix)) {
+        return false;
+      }
+
+      final int slash = path.indexOf('/', this.prefix.length());
+      return !this.listed.contains(path.substring(this.prefix.length(), slash == -1 ? path.length() : slash));
+    }
+
+    @Override
+    public boolean shouldBeRecursive() {
+      return true;
+    }
+
+    @Override
+    public TreeFilter clone() {
+      return this;
+    }
+  }
+
+  // the repository-relative path of the project directory, or null if the project is at the root of the work tree
+  private static @Nullable String relativePath(final File workTree, final File projectDir) throws IOException {
+    final String root = workTree.getCanonicalFile().toPath().toString();
+    final String project = projectDir.getCanonicalFile().toPath().toString();
+    if (project.equals(root) || !project.startsWith(root + File.separator)) return null;
+
+    return project.substring(root.length() + 1).replace(File.separatorChar, '/');
+  }
 }
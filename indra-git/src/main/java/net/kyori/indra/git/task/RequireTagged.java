@@ -23,8 +23,8 @@
  */
 package net.kyori.indra.git.task;
 
+import net.kyori.indra.git.RepositoryHandle;
 import net.kyori.indra.git.internal.IndraGitExtensionImpl;
-import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.lib.Ref;
 import org.gradle.api.GradleException;
 import org.gradle.api.tasks.TaskAction;
@@ -43,11 +43,12 @@ public abstract class RequireTagged extends RepositoryTask {
    */
   @TaskAction
   public void checkTagged() {
-    final @Nullable Git repo = this.repo();
-    final @Nullable Ref tag = repo == null ? null : IndraGitExtensionImpl.headTag(repo);
+    try (final @Nullable RepositoryHandle handle = this.openRepo()) {
+      final @Nullable Ref tag = handle == null ? null : IndraGitExtensionImpl.headTag(handle.git());
 
-    if (tag == null && repo != null) {
-      throw new GradleException("The current repository must be checked out to a tagged commit to perform this operation.");
+      if (tag == null && handle != null) {
+        throw new GradleException("The current repository must be checked out to a tagged commit to perform this operation.");
+      }
     }
   }
 
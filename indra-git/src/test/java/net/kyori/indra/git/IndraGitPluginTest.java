@@ -23,20 +23,29 @@
  */
 package net.kyori.indra.git;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import net.kyori.indra.git.internal.GitCache;
+import net.kyori.indra.git.internal.GitMetrics;
 import net.kyori.indra.git.internal.IndraGitExtensionImpl;
+import net.kyori.indra.git.task.RequireClean;
 import net.kyori.indra.test.IndraTesting;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.gradle.api.GradleException;
 import org.gradle.api.Project;
+import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -44,6 +53,9 @@ import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class IndraGitPluginTest {
@@ -105,6 +117,76 @@ class IndraGitPluginTest {
     assertTrue(subproject.getExtensions().getByType(IndraGitExtension.class).isPresent());
   }
 
+  @Test
+  void testRepositoriesDiscoveredInBulk() throws IOException, GitAPIException {
+    final Path repoDir = this.projectDir.resolve("repo");
+    final Path outside = this.projectDir.resolve("outside");
+    initRepo(repoDir);
+    Files.createDirectories(outside);
+
+    final Map<File, String> projects = new HashMap<>();
+    for (int i = 0; i < 8; i++) {
+      final Path subproject = Files.createDirectories(repoDir.resolve("subprojects/sub" + i));
+      projects.put(subproject.toFile(), "sub" + i);
+    }
+    projects.put(outside.toFile(), "outside");
+    this.prov.discover(projects);
+
+    final Git git = this.prov.git(repoDir.resolve("subprojects/sub3").toFile(), "sub3");
+    assertNotNull(git);
+    assertEquals(repoDir.resolve(".git").toFile().getCanonicalFile(), git.getRepository().getDirectory().getCanonicalFile());
+    assertSame(git, this.prov.git(repoDir.resolve("subprojects").toFile(), "subprojects"));
+    assertNull(this.prov.git(outside.toFile(), "outside"));
+  }
+
+  @Test
+  void testQueryStatisticsRecorded() throws IOException, GitAPIException {
+    final IndraGitExtension extension = this.createExtensionAndRepo();
+    extension.branchName().get();
+
+    final Map<String, GitMetrics.Query> queries = this.prov.metrics().queries();
+    assertEquals(1, queries.get(GitMetrics.OPEN).count());
+    final GitMetrics.Query snapshot = queries.get(GitMetrics.obtain(IndraGitExtensionImpl.QuerySnapshot.class));
+    assertNotNull(snapshot);
+    assertEquals(1, snapshot.count());
+    assertTrue(snapshot.maxNanos() <= snapshot.totalNanos());
+
+    final StringWriter json = new StringWriter();
+    this.prov.metrics().writeJson(json);
+    assertTrue(json.toString().contains("\"open\": {\"count\": 1,"), json::toString);
+  }
+
+  @Test
+  void testProvidersShareOneSnapshot() throws IOException, GitAPIException {
+    final IndraGitExtension extension = this.createExtensionAndRepo();
+    extension.tags().get();
+    extension.headTag().getOrNull();
+    extension.describe().getOrNull();
+    extension.branch().getOrNull();
+    extension.commit().getOrNull();
+
+    final GitMetrics.Query snapshot = this.prov.metrics().queries().get(GitMetrics.obtain(IndraGitExtensionImpl.QuerySnapshot.class));
+    assertNotNull(snapshot);
+    assertEquals(1, snapshot.count());
+  }
+
+  @Test
+  void testRepositoryReopenedAfterEviction() throws IOException, GitAPIException {
+    initRepo(this.projectDir).commit()
+      .setAllowEmpty(true)
+      .setMessage("Initial commit")
+      .setCommitter(COMMITTER)
+      .call();
+    this.prov.retention(() -> new GitCache.Retention(0, 1));
+
+    for (int i = 0; i < 2; i++) {
+      try (final GitCache.RepositoryHandle handle = this.prov.open(this.projectDir.toFile(), "root")) {
+        assertNotNull(handle);
+        assertEquals("Initial commit", handle.git().log().call().iterator().next().getShortMessage());
+      }
+    }
+  }
+
   @Test
   void testRepositoryDetectedThroughSubmodule() throws IOException, GitAPIException {
     final Path mainProject = this.projectDir.resolve("main");
@@ -204,6 +286,143 @@ class IndraGitPluginTest {
     assertEquals("v1", Repository.shortenRefName(extension.headTag().get().getName()));
   }
 
+  @Test
+  void testHeadTagVisibleAfterTagCreated() throws IOException, GitAPIException {
+    final IndraGitExtensionImpl extension = this.createExtensionAndRepo();
+    Files.write(this.projectDir.resolve("test.properties"), Collections.singletonList("boink"), StandardCharsets.UTF_8);
+
+    extension.git().commit()
+      .setAll(true)
+      .setMessage("Initial commit")
+      .setCommitter(COMMITTER)
+      .call();
+
+    extension.git().tag()
+      .setName("v2")
+      .setAnnotated(false)
+      .call();
+
+    // populate the tag index
+    assertEquals("v2", Repository.shortenRefName(extension.headTag().get().getName()));
+
+    extension.git().tag()
+      .setName("v1")
+      .setAnnotated(false)
+      .call();
+
+    // providers are read once per build, so the next build sees the new tag
+    assertEquals("v1", Repository.shortenRefName(this.createExtension().headTag().get().getName()));
+  }
+
+  @Test
+  void testDescribe() throws IOException, GitAPIException {
+    final IndraGitExtensionImpl extension = this.createExtensionAndRepo();
+    Files.write(this.projectDir.resolve("test.properties"), Collections.singletonList("boink"), StandardCharsets.UTF_8);
+
+    final RevCommit tagged = extension.git().commit()
+      .setAll(true)
+      .setMessage("Initial commit")
+      .setCommitter(COMMITTER)
+      .call();
+
+    assertFalse(extension.describe().isPresent());
+
+    extension.git().tag()
+      .setName("v1")
+      .setAnnotated(false)
+      .call();
+
+    // providers are read once per build, so each change is checked from a new build
+    assertEquals("v1-0-g" + tagged.abbreviate(7).name(), this.createExtension().describe().get());
+
+    Files.write(this.projectDir.resolve("test.properties"), Collections.singletonList("blah"), StandardCharsets.UTF_8);
+
+    final RevCommit next = extension.git().commit()
+      .setAll(true)
+      .setMessage("stage 2")
+      .setCommitter(COMMITTER)
+      .call();
+
+    assertEquals("v1-1-g" + next.abbreviate(7).name(), this.createExtension().describe().get());
+  }
+
+  @Test
+  void testDescribeWithCommitGraph() throws IOException, GitAPIException {
+    final IndraGitExtensionImpl extension = this.createExtensionAndRepo();
+    extension.git().commit()
+      .setAllowEmpty(true)
+      .setMessage("Initial commit")
+      .setCommitter(COMMITTER)
+      .call();
+
+    extension.git().tag()
+      .setName("v1")
+      .setMessage("Release v1")
+      .setTagger(COMMITTER)
+      .setAnnotated(true)
+      .call();
+
+    for (int i = 0; i < 3; i++) {
+      extension.git().commit()
+        .setAllowEmpty(true)
+        .setMessage("commit " + i)
+        .setCommitter(COMMITTER)
+        .call();
+    }
+    IndraTesting.exec(this.projectDir, "git", "commit-graph", "write", "--reachable");
+
+    // and one more commit that is not yet in the graph
+    final RevCommit head = extension.git().commit()
+      .setAllowEmpty(true)
+      .setMessage("after graph")
+      .setCommitter(COMMITTER)
+      .call();
+
+    assertEquals("v1-4-g" + head.abbreviate(7).name(), extension.describe().get());
+
+    final IndraGitExtensionImpl bounded = this.createExtension();
+    bounded.describeMaxDepth().set(2);
+    assertFalse(bounded.describe().isPresent());
+  }
+
+  @Test
+  void testShallowClone(final @TempDir Path upstreamDir) throws IOException, GitAPIException {
+    try (final Git upstream = initRepo(upstreamDir)) {
+      for (int i = 1; i <= 2; i++) {
+        upstream.commit()
+          .setAllowEmpty(true)
+          .setMessage("commit " + i)
+          .setCommitter(COMMITTER)
+          .call();
+        upstream.tag()
+          .setName("v" + i)
+          .setMessage("Release v" + i)
+          .setTagger(COMMITTER)
+          .setAnnotated(true)
+          .call();
+      }
+    }
+    IndraTesting.exec(upstreamDir, "git", "clone", "--depth=1", upstreamDir.toUri().toString(), this.projectDir.toString());
+    assertTrue(Files.isRegularFile(this.projectDir.resolve(".git/shallow")));
+
+    final IndraGitExtensionImpl extension = this.createExtension();
+    final ObjectId tagged = extension.commit().get();
+    assertEquals("refs/tags/v2", extension.headTag().get().getName());
+    assertEquals("v2-0-g" + tagged.abbreviate(7).name(), extension.describe().get());
+
+    extension.git().commit()
+      .setAllowEmpty(true)
+      .setMessage("untagged")
+      .setCommitter(COMMITTER)
+      .call();
+
+    final IndraGitExtensionImpl untagged = this.createExtension();
+    untagged.shallowDescribeFallback().set("unknown");
+    assertFalse(untagged.headTag().isPresent());
+    assertEquals("unknown", untagged.describe().get());
+    assertFalse(this.createExtension().describe().isPresent());
+  }
+
   @Test
   void testBranchOnInitialCommit() throws IOException, GitAPIException {
     final IndraGitExtension extension = this.createExtensionAndRepo();
@@ -253,6 +472,78 @@ class IndraGitPluginTest {
     assertEquals(commit.getName(), extension.commit().get().getName());
   }
 
+  @Test
+  void testRequireCleanIgnoresChangesOutsideProject() throws IOException, GitAPIException {
+    final Project subproject = this.createRepoWithSubproject();
+    Files.write(this.projectDir.resolve("README.md"), Collections.singletonList("changed"), StandardCharsets.UTF_8);
+    Files.write(this.projectDir.resolve("untracked.txt"), Collections.singletonList("new"), StandardCharsets.UTF_8);
+
+    assertNull(requireClean(subproject, 1));
+  }
+
+  @Test
+  void testRequireCleanDetectsDeletedFile() throws IOException, GitAPIException {
+    final Project subproject = this.createRepoWithSubproject();
+    Files.delete(this.projectDir.resolve("sub/src/b.txt"));
+
+    final @Nullable String message = requireClean(subproject, 1);
+    assertNotNull(message);
+    assertTrue(message.contains("- sub/src/b.txt"), message);
+  }
+
+  @Test
+  void testRequireCleanParallelMatchesSerial() throws IOException, GitAPIException {
+    final Project subproject = this.createRepoWithSubproject();
+    Files.write(this.projectDir.resolve("README.md"), Collections.singletonList("changed"), StandardCharsets.UTF_8);
+    Files.write(this.projectDir.resolve("sub/a.txt"), Collections.singletonList("changed"), StandardCharsets.UTF_8);
+    Files.delete(this.projectDir.resolve("sub/src/b.txt"));
+    Files.write(this.projectDir.resolve("sub/src/new.txt"), Collections.singletonList("new"), StandardCharsets.UTF_8);
+    // a whole top-level entry that is only in the index, so no partition lists it
+    Files.delete(this.projectDir.resolve("sub/gone/c.txt"));
+    Files.delete(this.projectDir.resolve("sub/gone"));
+
+    final @Nullable String serial = requireClean(subproject, 1);
+    assertNotNull(serial);
+    for (final String changed : new String[] {"sub/a.txt", "sub/src/b.txt", "sub/src/new.txt", "sub/gone/c.txt"}) {
+      assertTrue(serial.contains("- " + changed), serial);
+    }
+    assertFalse(serial.contains("README.md"), serial);
+    assertEquals(serial, requireClean(subproject, 2));
+    assertEquals(serial, requireClean(subproject, 8));
+  }
+
+  // a repository with a committed file at the root, and a committed subproject in sub/
+  private Project createRepoWithSubproject() throws IOException, GitAPIException {
+    final Git git = initRepo(this.projectDir);
+    for (final String file : new String[] {"README.md", "sub/a.txt", "sub/build.gradle", "sub/src/b.txt", "sub/gone/c.txt", "sub/z.txt"}) {
+      final Path path = this.projectDir.resolve(file);
+      Files.createDirectories(path.getParent());
+      Files.write(path, Collections.singletonList(file), StandardCharsets.UTF_8);
+    }
+    git.add().addFilepattern(".").call();
+    git.commit()
+      .setMessage("Initial commit")
+      .setCommitter(COMMITTER)
+      .call();
+
+    final Project base = IndraTesting.project(b -> b.withProjectDir(this.projectDir.toFile()));
+    final Project subproject = IndraTesting.project(b -> b.withParent(base).withName("sub").withProjectDir(this.projectDir.resolve("sub").toFile()));
+    subproject.getPluginManager().apply(PLUGIN);
+    return subproject;
+  }
+
+  // the failure message of requireClean, or null if it passes
+  private static @Nullable String requireClean(final Project project, final int parallelism) {
+    final RequireClean task = project.getTasks().named(GitPlugin.REQUIRE_CLEAN_TASK, RequireClean.class).get();
+    task.getParallelism().set(parallelism);
+    try {
+      task.check();
+      return null;
+    } catch (final GradleException ex) {
+      return ex.getMessage();
+    }
+  }
+
   private Project createProject() {
     final Project project = IndraTesting.project(p -> p.withProjectDir(this.projectDir.toFile()));
     project.getPluginManager().apply(PLUGIN);
@@ -0,0 +1,171 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2024 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.git.internal;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import net.kyori.indra.git.IndraGitExtension;
+import net.kyori.indra.test.IndraTesting;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.gradle.api.Project;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GitPerformanceTest {
+  @TempDir
+  private Path projectDir;
+
+  private GitCache.GitProvider prov;
+
+  @BeforeEach
+  void setupRepository() throws GitAPIException {
+    Git.init().setDirectory(this.projectDir.toFile()).setInitialBranch("trunk").call().close();
+    this.prov = GitCache.getOrCreate(this.projectDir.toFile());
+  }
+
+  @AfterEach
+  void tearDown() {
+    GitCache.close(this.prov);
+    // the window cache is shared by the whole JVM, so restore JGit's defaults for other tests
+    new WindowCacheConfig().install();
+  }
+
+  @Test
+  void testPerformanceOptionsReachGitCache() {
+    final IndraGitExtension extension = this.createExtension();
+    extension.performance(performance -> {
+      performance.packedGitMmap(true);
+      performance.packedGitLimit(32L * 1024 * 1024);
+      performance.deltaBaseCacheLimit(4 * 1024 * 1024);
+      performance.streamFileThreshold(1024 * 1024);
+      performance.repositoryIdleTimeout(Duration.ofSeconds(30));
+      performance.maxOpenRepositories(3);
+    });
+    assertTrue(extension.isPresent()); // opens the repository
+
+    final WindowCacheConfig windowCache = GitCache.installedWindowCache(this.prov);
+    assertNotNull(windowCache);
+    assertTrue(windowCache.isPackedGitMMAP());
+    assertEquals(32L * 1024 * 1024, windowCache.getPackedGitLimit());
+    assertEquals(4 * 1024 * 1024, windowCache.getDeltaBaseCacheLimit());
+    assertEquals(1024 * 1024, windowCache.getStreamFileThreshold());
+
+    final GitCache.Retention retention = GitCache.retention(this.prov);
+    assertNotNull(retention);
+    assertEquals(Duration.ofSeconds(30).toNanos(), retention.idleTimeoutNanos);
+    assertEquals(3, retention.maxOpenRepositories);
+  }
+
+  @Test
+  void testUnsetWindowCacheOptionsKeepCurrentConfiguration() {
+    final IndraGitExtension extension = this.createExtension();
+    extension.performance(performance -> performance.maxOpenRepositories(2));
+    assertTrue(extension.isPresent());
+
+    assertNull(GitCache.installedWindowCache(this.prov));
+    final GitCache.Retention retention = GitCache.retention(this.prov);
+    assertNotNull(retention);
+    assertEquals(2, retention.maxOpenRepositories);
+  }
+
+  @Test
+  void testUnsetOptionsUseJGitDefaults() {
+    final IndraGitExtension extension = this.createExtension();
+    extension.performance(performance -> performance.packedGitLimit(16L * 1024 * 1024));
+    assertTrue(extension.isPresent());
+
+    final WindowCacheConfig windowCache = GitCache.installedWindowCache(this.prov);
+    assertNotNull(windowCache);
+    final WindowCacheConfig defaults = new WindowCacheConfig();
+    assertEquals(16L * 1024 * 1024, windowCache.getPackedGitLimit());
+    assertEquals(defaults.getDeltaBaseCacheLimit(), windowCache.getDeltaBaseCacheLimit());
+    assertEquals(defaults.getStreamFileThreshold(), windowCache.getStreamFileThreshold());
+    assertEquals(defaults.isPackedGitMMAP(), windowCache.isPackedGitMMAP());
+  }
+
+  @Test
+  void testIdleRepositoriesKeptOpenByDefault() {
+    final IndraGitExtension extension = this.createExtension();
+    assertTrue(extension.isPresent());
+
+    final GitCache.Retention retention = GitCache.retention(this.prov);
+    assertNotNull(retention);
+    assertTrue(retention.idleTimeoutNanos < 0, "repositories should only be closed when a timeout is configured");
+    assertEquals(0, retention.maxOpenRepositories);
+  }
+
+  @Test
+  void testGitDoesNotCloseRepositories() {
+    this.prov.retention(() -> new GitCache.Retention(0, 0));
+    assertNotNull(this.prov.git(this.projectDir.toFile(), "root"));
+
+    // the repository may still be in use by the caller, so only a sweep may close it
+    assertEquals(1, GitCache.openRepositories(this.prov));
+    assertTrue(GitCache.sweepScheduled());
+    GitCache.sweep();
+    assertEquals(0, GitCache.openRepositories(this.prov));
+  }
+
+  @Test
+  void testHandleKeepsRepositoryOpenDuringSweep() {
+    this.prov.retention(() -> new GitCache.Retention(0, 0));
+    try (final GitCache.RepositoryHandle handle = this.prov.open(this.projectDir.toFile(), "root")) {
+      assertNotNull(handle);
+      GitCache.sweep();
+      assertEquals(1, GitCache.openRepositories(this.prov));
+    }
+    assertEquals(0, GitCache.openRepositories(this.prov));
+  }
+
+  @Test
+  void testSubprojectOptionsIgnored() {
+    final Project root = IndraTesting.project(p -> p.withProjectDir(this.projectDir.toFile()));
+    root.getPluginManager().apply("net.kyori.indra.git");
+    final Project subproject = IndraTesting.project(p -> p.withParent(root));
+    subproject.getPluginManager().apply("net.kyori.indra.git");
+
+    root.getExtensions().getByType(IndraGitExtension.class).performance(performance -> performance.maxOpenRepositories(4));
+    subproject.getExtensions().getByType(IndraGitExtension.class).performance(performance -> performance.maxOpenRepositories(8));
+    assertTrue(subproject.getExtensions().getByType(IndraGitExtension.class).isPresent());
+
+    final GitCache.Retention retention = GitCache.retention(this.prov);
+    assertNotNull(retention);
+    assertEquals(4, retention.maxOpenRepositories);
+  }
+
+  private IndraGitExtension createExtension() {
+    final Project project = IndraTesting.project(p -> p.withProjectDir(this.projectDir.toFile()));
+    project.getPluginManager().apply("net.kyori.indra.git");
+    return project.getExtensions().getByType(IndraGitExtension.class);
+  }
+}
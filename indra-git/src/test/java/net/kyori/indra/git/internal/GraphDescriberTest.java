@@ -0,0 +1,198 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2024 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.git.internal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import net.kyori.indra.test.IndraTesting;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GraphDescriberTest {
+  private static final PersonIdent COMMITTER = new PersonIdent("CI", "noreply@kyori.net");
+
+  @TempDir
+  private Path projectDir;
+
+  private Git git;
+
+  @BeforeEach
+  void setupRepository() throws GitAPIException {
+    this.git = Git.init()
+      .setDirectory(this.projectDir.toFile())
+      .setInitialBranch("trunk")
+      .call();
+  }
+
+  @AfterEach
+  void closeRepository() {
+    this.git.close();
+  }
+
+  @Test
+  void testStopsAtAnnotatedTagOnLinearHistory() throws GitAPIException, IOException, InterruptedException {
+    // tags every five commits, alternating between annotated and lightweight, ending with an annotated tag
+    for (int i = 1; i <= 60; i++) {
+      this.commit("Commit " + i);
+      if (i % 5 == 0) this.tag("v" + i, i % 10 == 0);
+    }
+    for (int i = 0; i < 3; i++) this.commit("Untagged " + i);
+
+    final GraphDescriber describer = this.describer();
+    assertEquals(this.gitDescribe(), describer.describe(this.head()));
+    // HEAD, two untagged commits, then the tagged commit, after which there is nothing else to walk
+    assertEquals(4, describer.seen());
+  }
+
+  @Test
+  void testLightweightTagWalksToAnnotatedTag() throws GitAPIException, IOException, InterruptedException {
+    for (int i = 1; i <= 60; i++) {
+      this.commit("Commit " + i);
+      if (i % 5 == 0) this.tag("v" + i, i % 10 == 0);
+    }
+    this.commit("Tagged lightly");
+    this.tag("v61", false);
+    for (int i = 0; i < 3; i++) this.commit("Untagged " + i);
+
+    final GraphDescriber describer = this.describer();
+    assertEquals(this.gitDescribe(), describer.describe(this.head()));
+    // the closest annotated tag (v60) ends the walk, well before ten candidates are collected
+    assertEquals(5, describer.seen());
+  }
+
+  @Test
+  void testStopsOnceEveryTagIsFound() throws GitAPIException, IOException, InterruptedException {
+    for (int i = 1; i <= 60; i++) {
+      this.commit("Commit " + i);
+      if (i == 50 || i == 55) this.tag("v" + i, false);
+    }
+    for (int i = 0; i < 3; i++) this.commit("Untagged " + i);
+
+    final GraphDescriber describer = this.describer();
+    assertEquals(this.gitDescribe(), describer.describe(this.head()));
+    // eight commits down to v55, five more down to v50, then one more to confirm v55 covers what is left
+    assertEquals(15, describer.seen());
+  }
+
+  @Test
+  void testManyLightweightTagsMatchGit() throws GitAPIException, IOException, InterruptedException {
+    for (int i = 1; i <= 80; i++) {
+      this.commit("Commit " + i);
+      if (i % 3 == 0) this.tag("v" + i, false);
+    }
+    this.commit("Untagged");
+
+    final GraphDescriber describer = this.describer();
+    assertEquals(this.gitDescribe(), describer.describe(this.head()));
+  }
+
+  @Test
+  void testNoResultWhenMaxDepthReachedBeforeDepthIsKnown() throws GitAPIException, IOException, InterruptedException {
+    for (int i = 1; i <= 60; i++) {
+      this.commit("Commit " + i);
+      if (i == 50 || i == 55) this.tag("v" + i, false);
+    }
+    for (int i = 0; i < 3; i++) this.commit("Untagged " + i);
+
+    // v55 is found within the limit, but not whether it is the nearest tag
+    final GraphDescriber limited = this.describer(12);
+    assertNull(limited.describe(this.head()));
+    assertTrue(limited.exhausted());
+
+    final GraphDescriber sufficient = this.describer(15);
+    assertEquals(this.gitDescribe(), sufficient.describe(this.head()));
+    assertFalse(sufficient.exhausted());
+  }
+
+  @Test
+  void testNoResultWhenMaxDepthReachedBeforeTag() throws GitAPIException, IOException, InterruptedException {
+    this.commit("Commit 1");
+    this.tag("v1", true);
+    for (int i = 2; i <= 10; i++) this.commit("Commit " + i);
+
+    final GraphDescriber limited = this.describer(5);
+    assertNull(limited.describe(this.head()));
+    assertTrue(limited.exhausted());
+
+    final GraphDescriber unlimited = this.describer();
+    assertEquals(this.gitDescribe(), unlimited.describe(this.head()));
+    assertFalse(unlimited.exhausted());
+  }
+
+  private GraphDescriber describer() throws IOException {
+    return this.describer(Integer.MAX_VALUE);
+  }
+
+  private GraphDescriber describer(final int maxDepth) throws IOException {
+    IndraTesting.exec(this.projectDir, "git", "commit-graph", "write", "--reachable");
+    final CommitGraph graph = CommitGraph.open(this.git.getRepository().getDirectory());
+    assertNotNull(graph, "commit graph was not written");
+    return new GraphDescriber(this.git.getRepository(), graph, new TagIndex(this.git.getRepository()), maxDepth);
+  }
+
+  private String gitDescribe() throws IOException, InterruptedException {
+    final Process process = new ProcessBuilder("git", "describe", "--tags", "--long")
+      .directory(this.projectDir.toFile())
+      .redirectErrorStream(true)
+      .start();
+    final String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+    assertEquals(0, process.waitFor(), () -> "git describe failed: " + output);
+    return output;
+  }
+
+  private void commit(final String message) throws GitAPIException {
+    this.git.commit()
+      .setAllowEmpty(true)
+      .setMessage(message)
+      .setAuthor(COMMITTER)
+      .setCommitter(COMMITTER)
+      .call();
+  }
+
+  private void tag(final String name, final boolean annotated) throws GitAPIException {
+    if (annotated) {
+      this.git.tag().setName(name).setAnnotated(true).setMessage("Release " + name).setTagger(COMMITTER).call();
+    } else {
+      this.git.tag().setName(name).setAnnotated(false).call();
+    }
+  }
+
+  private ObjectId head() throws IOException {
+    return this.git.getRepository().resolve(Constants.HEAD);
+  }
+}
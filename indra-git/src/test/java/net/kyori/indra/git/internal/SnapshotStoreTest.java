@@ -0,0 +1,218 @@
+/*
+ * This file is part of indra, licensed under the MIT License.
+ *
+ * Copyright (c) 2024 KyoriPowered
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.kyori.indra.git.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import net.kyori.indra.test.IndraTesting;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotStoreTest {
+  private static final PersonIdent COMMITTER = new PersonIdent("CI", "noreply@kyori.net");
+
+  @TempDir
+  private Path projectDir;
+
+  private Git git;
+
+  @BeforeEach
+  void setupRepository() throws GitAPIException {
+    this.git = Git.init()
+      .setDirectory(this.projectDir.toFile())
+      .setInitialBranch("trunk")
+      .call();
+    this.commit("Initial commit");
+    this.git.tag().setName("v1").setAnnotated(false).call();
+  }
+
+  @AfterEach
+  void closeRepository() {
+    this.git.close();
+  }
+
+  @Test
+  void testStoreThenLoad() throws IOException {
+    ageRefs(this.git.getRepository());
+    final SnapshotStore store = this.store();
+    final RepositorySnapshot snapshot = RepositorySnapshot.capture(this.git);
+    store.store(this.fingerprint(), snapshot);
+
+    final RepositorySnapshot loaded = store.load(this.git.getRepository(), this.fingerprint());
+    assertNotNull(loaded);
+    assertEquals(snapshot, loaded);
+    assertEquals("v1-0-g" + this.head().abbreviate(7).name(), loaded.describe());
+  }
+
+  @Test
+  void testNewTagInvalidatesStore() throws IOException, GitAPIException {
+    this.storeCurrent();
+
+    this.git.tag().setName("v2").setAnnotated(false).call();
+
+    assertNull(this.store().load(this.git.getRepository(), this.fingerprint()));
+  }
+
+  @Test
+  void testBranchMoveInvalidatesStore() throws IOException, GitAPIException {
+    this.storeCurrent();
+
+    this.commit("Second commit");
+
+    assertNull(this.store().load(this.git.getRepository(), this.fingerprint()));
+  }
+
+  @Test
+  void testRacyFingerprintNotStored() throws IOException {
+    // the refs were just written, so their timestamps cannot be trusted yet
+    final RefsFingerprint fingerprint = this.fingerprint();
+    assertFalse(fingerprint.isStable());
+    this.store().store(fingerprint, RepositorySnapshot.capture(this.git));
+
+    assertFalse(Files.exists(this.projectDir.resolve(".gradle/indra-git")));
+    assertNull(this.store().load(this.git.getRepository(), this.fingerprint()));
+  }
+
+  @Test
+  void testWrongHeaderIgnored() throws IOException {
+    this.storeCurrent();
+    final Path file = this.storeFile();
+    final byte[] contents = Files.readAllBytes(file);
+    contents[0] ^= 0xff;
+    Files.write(file, contents);
+
+    assertNull(this.store().load(this.git.getRepository(), this.fingerprint()));
+  }
+
+  @Test
+  void testWrongFormatVersionIgnored() throws IOException {
+    this.storeCurrent();
+    final Path file = this.storeFile();
+    final byte[] contents = Files.readAllBytes(file);
+    contents[7] += 1; // last byte of the format version
+    Files.write(file, contents);
+
+    assertNull(this.store().load(this.git.getRepository(), this.fingerprint()));
+  }
+
+  @Test
+  void testTruncatedFileIgnored() throws IOException {
+    this.storeCurrent();
+    final Path file = this.storeFile();
+    final byte[] contents = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(contents, contents.length / 2));
+
+    assertNull(this.store().load(this.git.getRepository(), this.fingerprint()));
+  }
+
+  @Test
+  void testLinkedWorktreeSharesRefs() throws IOException, GitAPIException {
+    final Path worktree = this.projectDir.resolve("worktree");
+    IndraTesting.exec(this.projectDir, "git", "worktree", "add", "-b", "feature", worktree.toString());
+
+    try (final Git linked = Git.open(worktree.toFile())) {
+      final File linkedDir = linked.getRepository().getDirectory();
+      assertEquals(this.git.getRepository().getDirectory().getCanonicalFile(), RefsFingerprint.commonDirectory(linkedDir).getCanonicalFile());
+
+      ageRefs(this.git.getRepository());
+      ageRefs(linked.getRepository());
+      final RefsFingerprint before = RefsFingerprint.headAndTags(linkedDir);
+      assertTrue(before.matches(RefsFingerprint.headAndTags(linkedDir)));
+
+      // a tag created from the main worktree is visible from the linked one
+      this.git.tag().setName("v2").setAnnotated(false).call();
+      assertFalse(before.matches(RefsFingerprint.headAndTags(linkedDir)));
+    }
+  }
+
+  private void commit(final String message) throws GitAPIException {
+    this.git.commit()
+      .setAllowEmpty(true)
+      .setMessage(message)
+      .setCommitter(COMMITTER)
+      .call();
+  }
+
+  private ObjectId head() throws IOException {
+    return this.git.getRepository().resolve(Constants.HEAD);
+  }
+
+  private void storeCurrent() throws IOException {
+    ageRefs(this.git.getRepository());
+    this.store().store(this.fingerprint(), RepositorySnapshot.capture(this.git));
+    assertNotNull(this.store().load(this.git.getRepository(), this.fingerprint()), "snapshot was not stored");
+  }
+
+  private SnapshotStore store() {
+    return new SnapshotStore(this.projectDir.toFile(), this.git.getRepository(), Integer.MAX_VALUE);
+  }
+
+  private RefsFingerprint fingerprint() {
+    return RefsFingerprint.headAndTags(this.git.getRepository().getDirectory());
+  }
+
+  private Path storeFile() throws IOException {
+    try (final Stream<Path> files = Files.list(this.projectDir.resolve(".gradle/indra-git"))) {
+      return files.filter(file -> file.toString().endsWith(".bin")).findFirst().orElseThrow(IllegalStateException::new);
+    }
+  }
+
+  // move every ref timestamp out of the racy window, as if the refs were written a while ago
+  private static void ageRefs(final Repository repository) throws IOException {
+    final FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+    final File gitDir = repository.getDirectory();
+    final File commonDir = RefsFingerprint.commonDirectory(gitDir);
+    for (final File file : new File[] {new File(gitDir, Constants.HEAD), new File(commonDir, "packed-refs")}) {
+      if (file.exists()) Files.setLastModifiedTime(file.toPath(), past);
+    }
+    for (final String refs : new String[] {Constants.R_HEADS, Constants.R_TAGS}) {
+      final Path root = new File(commonDir, refs).toPath();
+      if (!Files.exists(root)) continue;
+      try (final Stream<Path> paths = Files.walk(root)) {
+        for (final Path path : (Iterable<Path>) paths::iterator) {
+          Files.setLastModifiedTime(path, past);
+        }
+      }
+    }
+  }
+}